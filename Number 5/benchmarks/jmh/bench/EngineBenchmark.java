@@ -0,0 +1,58 @@
+package bench;
+
+import java.util.ServiceLoader;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The EngineBenchmark class runs the operations of the Benchmarks harness under JMH,
+ * with the same boards, warm-up and measurement iterations. Add -prof gc for the
+ * bytes allocated per operation.
+ *
+ * JMH does not accept benchmarks in the default package, where the game classes live,
+ * so the operations come from the harness through EngineOperations, set up once per
+ * trial; the measured call is a plain interface call, as in the harness.
+ *
+ * Usage: mvn -Pjmh package, then java -jar target/benchmarks.jar [-p name=playMove] [-prof gc]
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+public class EngineBenchmark {
+    @Param({"playMove", "randomGame", "newGame", "randomMove", "minimaxDepth3"})
+    public String name;
+
+    /** Board size and win length, as size:winLength */
+    @Param({"3:3", "7:4", "15:5"})
+    public String board;
+
+    private LongSupplier operation;
+
+    @Setup
+    public void setUp() {
+        String[] shape = board.split(":");
+        EngineOperations operations = ServiceLoader.load(EngineOperations.class).findFirst()
+                .orElseThrow(() -> new IllegalStateException("Benchmarks is not on the class path"));
+        operation = operations.operation(name, Integer.parseInt(shape[0]), Integer.parseInt(shape[1]));
+    }
+
+    @Benchmark
+    public long run() {
+        return operation.getAsLong();
+    }
+}
@@ -0,0 +1,17 @@
+/**
+ * An AIPlayer chooses moves for the computer opponent.
+ * Moves are cell indices (row * cols + col) on the given BitBoard.
+ *
+ * Implementations may play and take back moves on the position while searching, but
+ * must leave it as it was when they return. They are called off the Swing event
+ * dispatch thread, on a copy of the game's board. Interrupting the thread running a
+ * search cancels it: the search returns as soon as it can, with the best move found so
+ * far, and the caller discards it.
+ */
+public interface AIPlayer {
+    /**
+     * Return the index of the cell the player should take next. The move must be
+     * chosen before deadline, a System.nanoTime() value.
+     */
+    int selectMove(BitBoard board, Seed player, long deadline);
+}
@@ -0,0 +1,129 @@
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.imageio.ImageIO;
+
+/**
+ * The AssetManager class loads the game's images and sounds. preload() starts decoding
+ * every asset in parallel on background threads at startup, so neither class
+ * initialization nor the Swing event thread waits on disk. getImage waits for an image
+ * asked for before it is ready (or loads it on the spot if preload() was never called);
+ * the event thread uses loadImage instead, drawing getGlyph until the image is ready.
+ *
+ * Images are cached once decoded, and again per size they are drawn at, so each one is
+ * scaled at most once per resolution. A missing or unreadable image is replaced by a
+ * generated glyph instead of failing.
+ */
+public final class AssetManager {
+    private static final int LOADER_THREADS = Math.min(4, Runtime.getRuntime().availableProcessors());
+    private static final ExecutorService LOADER = Executors.newFixedThreadPool(LOADER_THREADS, r -> {
+        Thread thread = new Thread(r, "Assets");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Decoded images by resource name, and scaled copies by name and size */
+    private static final Map<String, CompletableFuture<BufferedImage>> images = new ConcurrentHashMap<>();
+    private static final Map<String, BufferedImage> scaled = new ConcurrentHashMap<>();
+
+    private AssetManager() {
+    }
+
+    /**
+     * Start loading every Seed image and SoundEffect in the background, and record the
+     * load time in Metrics once all are done. Returns at once.
+     */
+    public static CompletableFuture<Void> preload() {
+        long start = System.nanoTime();
+        CompletableFuture<?>[] loads = new CompletableFuture<?>[Seed.values().length + 1];
+        for (Seed seed : Seed.values()) {
+            loads[seed.ordinal()] = (seed.getImageFilename() == null)
+                    ? CompletableFuture.completedFuture(null)
+                    : load(seed.getImageFilename(), seed.getDisplayName());
+        }
+        loads[loads.length - 1] = SoundEffect.initGame();
+        return CompletableFuture.allOf(loads).thenRun(
+                () -> Metrics.timer(Metrics.ASSET_LOAD_TIME).record(System.nanoTime() - start));
+    }
+
+    /** Return the image at its original size, or a fallback glyph showing the given text */
+    public static Image getImage(String name, String glyph) {
+        return load(name, glyph).join();
+    }
+
+    /** Return the image scaled to size x size, scaling it only the first time */
+    public static Image getImage(String name, String glyph, int size) {
+        String key = name + '@' + size;
+        BufferedImage image = scaled.get(key);
+        if (image == null) {
+            image = scale(load(name, glyph).join(), size);
+            scaled.putIfAbsent(key, image);
+        }
+        return image;
+    }
+
+    /**
+     * Return the image scaled to size x size as a future that completes on a loader
+     * thread, so the caller never waits.
+     */
+    public static CompletableFuture<Image> loadImage(String name, String glyph, int size) {
+        return load(name, glyph).thenApplyAsync(image -> getImage(name, glyph, size), LOADER);
+    }
+
+    /** Return the text drawn on a size x size square, to show until an image is loaded */
+    public static Image getGlyph(String text, int size) {
+        return scaled.computeIfAbsent(text + "@glyph" + size, key -> fallbackGlyph(text, size));
+    }
+
+    private static CompletableFuture<BufferedImage> load(String name, String glyph) {
+        return images.computeIfAbsent(name, n -> CompletableFuture.supplyAsync(() -> decode(n, glyph), LOADER));
+    }
+
+    private static BufferedImage decode(String name, String glyph) {
+        try (InputStream in = AssetManager.class.getClassLoader().getResourceAsStream(name)) {
+            BufferedImage image = (in == null) ? null : ImageIO.read(in);
+            if (image != null) {
+                return image;
+            }
+            System.err.println("Couldn't find file " + name);
+        } catch (IOException e) {
+            System.err.println("Couldn't read file " + name + ": " + e.getMessage());
+        }
+        return fallbackGlyph(glyph, Cell.SEED_SIZE);
+    }
+
+    private static BufferedImage scale(BufferedImage image, int size) {
+        BufferedImage result = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = result.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(image, 0, 0, size, size, null);
+        g.dispose();
+        return result;
+    }
+
+    /** Draw the text centred on a transparent square, in place of a missing image */
+    private static BufferedImage fallbackGlyph(String text, int size) {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setColor(Color.WHITE);
+        g.setFont(new Font(Font.SANS_SERIF, Font.BOLD, size * 3 / 4));
+        FontMetrics metrics = g.getFontMetrics();
+        g.drawString(text, (size - metrics.stringWidth(text)) / 2,
+                (size - metrics.getHeight()) / 2 + metrics.getAscent());
+        g.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,308 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The BatchEvaluator class scores large batches of positions of one board shape, headless
+ * and in parallel, for bulk analysis (e.g. of every position in a game log).
+ *
+ * Positions go in packed: count * rows * cols bytes, one Seed ordinal per cell in row-major
+ * order (see encode). Results come out in the parallel arrays of a Results: for each
+ * position its State (or INVALID), the first and last cell of the winning line, and for
+ * a position still being played the best move and its value for the side to move, in
+ * MinimaxAI score units (a win is near MinimaxAI.WIN_SCORE). The side to move follows
+ * from the counts: X moves first.
+ *
+ * Each worker thread owns its board and a single-threaded MinimaxAI searching to the
+ * given depth, and claims positions in chunks, so the workers share nothing but a
+ * counter; their transposition tables carry over between the positions of a batch.
+ *
+ * Usage: BatchEvaluator file [depth] [threads]
+ *   evaluates every position of every game in a log written by GameRecordWriter and
+ *   reports throughput and how often the move played was the engine's best move.
+ */
+public class BatchEvaluator implements Closeable {
+    /** State code of a position that cannot arise in a game (wrong counts, or both players won) */
+    public static final byte INVALID = -1;
+    /** Positions claimed by a worker at a time */
+    private static final int CHUNK = 64;
+    private static final int TABLE_LOG2_SIZE = 18;
+    private static final Seed[] SEEDS = Seed.values();
+
+    /** Output arrays, one entry per position; reusable across batches of up to capacity positions */
+    public static final class Results {
+        /** State ordinal, or INVALID */
+        public final byte[] states;
+        /** First and last cell of the winning line, or -1 */
+        public final int[] winStarts, winEnds;
+        /** Best cell for the side to move, or -1 if the game is over */
+        public final int[] bestMoves;
+        /** Value of the position for the side to move: 0 for a draw, negative if it lost */
+        public final int[] values;
+
+        public Results(int capacity) {
+            states = new byte[capacity];
+            winStarts = new int[capacity];
+            winEnds = new int[capacity];
+            bestMoves = new int[capacity];
+            values = new int[capacity];
+        }
+
+        public int getCapacity() {
+            return states.length;
+        }
+    }
+
+    private final int rows, cols, winLength, depth;
+    private final int threads;
+    private final Worker[] workers;
+    private final ExecutorService executor;
+    private final LongAdder positions = Metrics.counter("batch.positions");
+
+    /** Constructor for boards of this shape, searched depth plies deep on the given number of threads */
+    public BatchEvaluator(int rows, int cols, int winLength, int depth, int threads) {
+        this.rows = rows;
+        this.cols = cols;
+        this.winLength = winLength;
+        this.depth = depth;
+        this.threads = Math.max(1, threads);
+        workers = new Worker[this.threads];
+        for (int i = 0; i < workers.length; ++i) {
+            workers[i] = new Worker();
+        }
+        executor = Executors.newFixedThreadPool(this.threads, r -> {
+            Thread thread = new Thread(r, "Batch evaluator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getWinLength() {
+        return winLength;
+    }
+
+    /** Write the cells of board into cells[offset .. offset + rows * cols) */
+    public static void encode(BitBoard board, byte[] cells, int offset) {
+        for (int index = 0; index < board.getSize(); ++index) {
+            cells[offset + index] = (byte) board.get(index).ordinal();
+        }
+    }
+
+    /** Evaluate count packed positions into new Results */
+    public Results evaluate(byte[] cells, int count) {
+        Results results = new Results(count);
+        evaluate(cells, count, results);
+        return results;
+    }
+
+    /** Evaluate count packed positions into results[0 .. count), returning once all are done */
+    public void evaluate(byte[] cells, int count, Results results) {
+        int cellCount = rows * cols;
+        if (cells.length < (long) count * cellCount) {
+            throw new IllegalArgumentException("Expected " + count + " positions of " + cellCount + " cells");
+        }
+        if (results.getCapacity() < count) {
+            throw new IllegalArgumentException("Results hold only " + results.getCapacity() + " positions");
+        }
+        AtomicInteger next = new AtomicInteger();
+        int active = Math.min(threads, (count + CHUNK - 1) / CHUNK);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 1; i < active; ++i) {
+            Worker worker = workers[i];
+            futures.add(executor.submit(() -> worker.run(cells, count, next, results)));
+        }
+        workers[0].run(cells, count, next, results); // the caller works too
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Batch worker failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while evaluating", e);
+        }
+        positions.add(count);
+    }
+
+    /** One worker's board and searcher, used by one thread at a time */
+    private final class Worker {
+        private final BitBoard board = new BitBoard(rows, cols, winLength);
+        private final MinimaxAI ai = new MinimaxAI(depth, 1, TABLE_LOG2_SIZE);
+
+        void run(byte[] cells, int count, AtomicInteger next, Results results) {
+            int start;
+            while ((start = next.getAndAdd(CHUNK)) < count) {
+                int end = Math.min(count, start + CHUNK);
+                for (int i = start; i < end; ++i) {
+                    evaluate(cells, i * board.getSize(), i, results);
+                }
+            }
+        }
+
+        private void evaluate(byte[] cells, int offset, int i, Results results) {
+            int crosses = 0, noughts = 0;
+            for (int index = 0; index < board.getSize(); ++index) {
+                Seed seed = SEEDS[cells[offset + index]];
+                if (seed == Seed.CROSS) {
+                    crosses++;
+                } else if (seed == Seed.NOUGHT) {
+                    noughts++;
+                }
+            }
+            // Each player's seeds on their own show whether that player has a line,
+            // without playing on past a win
+            int winStart = -1, winEnd = -1;
+            boolean crossWon = placeOnly(cells, offset, Seed.CROSS);
+            if (crossWon) {
+                winStart = board.getWinStart();
+                winEnd = board.getWinEnd();
+            }
+            boolean noughtWon = placeOnly(cells, offset, Seed.NOUGHT);
+            if (noughtWon) {
+                winStart = board.getWinStart();
+                winEnd = board.getWinEnd();
+            }
+
+            results.winStarts[i] = winStart;
+            results.winEnds[i] = winEnd;
+            results.bestMoves[i] = -1;
+            results.values[i] = 0;
+            Seed toMove = (crosses == noughts) ? Seed.CROSS : (crosses == noughts + 1) ? Seed.NOUGHT : null;
+            if (toMove == null || crossWon && noughtWon || crossWon && toMove != Seed.NOUGHT
+                    || noughtWon && toMove != Seed.CROSS) {
+                results.states[i] = INVALID;
+                results.winStarts[i] = results.winEnds[i] = -1;
+            } else if (crossWon || noughtWon) {
+                results.states[i] = (byte) (crossWon ? State.CROSS_WON : State.NOUGHT_WON).ordinal();
+                results.values[i] = -MinimaxAI.WIN_SCORE; // the side to move has lost
+            } else if (crosses + noughts == board.getSize()) {
+                results.states[i] = (byte) State.DRAW.ordinal();
+            } else {
+                // Neither player has a line, so the seeds can be placed in any order
+                board.reset();
+                for (int index = 0; index < board.getSize(); ++index) {
+                    Seed seed = SEEDS[cells[offset + index]];
+                    if (seed != Seed.NO_SEED) {
+                        board.play(seed, index);
+                    }
+                }
+                results.states[i] = (byte) State.PLAYING.ordinal();
+                results.bestMoves[i] = ai.selectMove(board, toMove, Long.MAX_VALUE);
+                results.values[i] = ai.getScore();
+            }
+        }
+
+        /** Place only seed's cells on the empty board, stopping at a win; return true if it won */
+        private boolean placeOnly(byte[] cells, int offset, Seed seed) {
+            board.reset();
+            for (int index = 0; index < board.getSize() && board.getState() == State.PLAYING; ++index) {
+                if (SEEDS[cells[offset + index]] == seed) {
+                    board.play(seed, index);
+                }
+            }
+            return board.getState() == State.CROSS_WON || board.getState() == State.NOUGHT_WON;
+        }
+    }
+
+    /** Stop the worker threads */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: BatchEvaluator file [depth] [threads]");
+            return;
+        }
+        int depth = (args.length > 1) ? Integer.parseInt(args[1]) : 4;
+        int threads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int batchSize = 1 << 14;
+        long start = System.nanoTime();
+        long total = 0, decided = 0, matched = 0;
+
+        BatchEvaluator evaluator = null;
+        BitBoard board = null;
+        byte[] cells = null;
+        int[] played = new int[batchSize];
+        Results results = new Results(batchSize);
+        int count = 0;
+        try (GameRecordReader reader = new GameRecordReader(Paths.get(args[0]))) {
+            while (reader.hasNext()) {
+                GameRecord game = reader.next();
+                if (evaluator == null || evaluator.getRows() != game.getRows() || evaluator.getCols() != game.getCols()
+                        || evaluator.getWinLength() != game.getWinLength()) {
+                    if (count > 0) {
+                        evaluator.evaluate(cells, count, results);
+                        matched += countMatches(results, played, count);
+                        total += count;
+                        count = 0;
+                    }
+                    if (evaluator != null) {
+                        evaluator.close();
+                    }
+                    evaluator = new BatchEvaluator(game.getRows(), game.getCols(), game.getWinLength(), depth, threads);
+                    board = new BitBoard(game.getRows(), game.getCols(), game.getWinLength());
+                    cells = new byte[batchSize * board.getSize()];
+                }
+                // Every position before a move of the game, paired with the move played
+                board.reset();
+                Seed player = Seed.CROSS;
+                for (int move : game.getMoves()) {
+                    encode(board, cells, count * board.getSize());
+                    played[count++] = move;
+                    board.play(player, move);
+                    player = (player == Seed.CROSS) ? Seed.NOUGHT : Seed.CROSS;
+                    if (count == batchSize) {
+                        evaluator.evaluate(cells, count, results);
+                        matched += countMatches(results, played, count);
+                        total += count;
+                        count = 0;
+                    }
+                }
+                decided += (game.getResult() == State.CROSS_WON || game.getResult() == State.NOUGHT_WON) ? 1 : 0;
+            }
+            if (count > 0) {
+                evaluator.evaluate(cells, count, results);
+                matched += countMatches(results, played, count);
+                total += count;
+            }
+        } finally {
+            if (evaluator != null) {
+                evaluator.close();
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d positions evaluated to depth %d on %d threads in %.2f s (%.0f positions/s)%n",
+                total, depth, threads, seconds, total / seconds);
+        System.out.printf("Played move was the engine's best in %.1f%% of positions; %d games were won%n",
+                (total == 0) ? 0 : 100.0 * matched / total, decided);
+    }
+
+    private static long countMatches(Results results, int[] played, int count) {
+        long matched = 0;
+        for (int i = 0; i < count; ++i) {
+            if (results.bestMoves[i] == played[i]) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+}
@@ -0,0 +1,211 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.LongSupplier;
+
+/**
+ * The Benchmarks class measures the hot paths of the game engine and AI, JMH-style:
+ * every benchmark is run for a few warm-up iterations (so the JIT settles), then for
+ * timed measurement iterations, and reported as mean time per operation with its
+ * standard deviation across iterations, together with the bytes allocated per
+ * operation by the benchmark thread (the move and random-move paths should show 0).
+ * Results are consumed into a sink so the JIT cannot eliminate the work.
+ *
+ * Each benchmark runs for every board in BOARDS (size x size, winLength in a row).
+ * The baseline results are kept in benchmarks/baseline.txt; compare against them when
+ * changing the engine or the AI.
+ *
+ * The same operations also run under JMH (benchmarks/jmh, built by the jmh profile of
+ * the pom: mvn -Pjmh package, then java -jar target/benchmarks.jar), which gets them
+ * through bench.EngineOperations; this class stays as the dependency-free fallback.
+ *
+ * Usage: Benchmarks [filter]   (only benchmarks whose name contains filter are run)
+ */
+public class Benchmarks {
+    /** Board size and win length of every parameter set */
+    private static final int[][] BOARDS = {{3, 3}, {7, 4}, {15, 5}};
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURE_ITERATIONS = 5;
+    private static final long ITERATION_NANOS = 500_000_000L;
+
+    /** One benchmark operation; its result is added to the sink */
+    interface Operation {
+        long run();
+    }
+
+    /** Creates the operation for one board; setup work done here is not measured */
+    interface Benchmark {
+        Operation setUp(int size, int winLength);
+    }
+
+    private static final List<String> names = new ArrayList<>();
+    private static final List<Benchmark> benchmarks = new ArrayList<>();
+    private static long sink;
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    /** Bytes allocated per call in the last iteration */
+    private static double allocatedPerCall;
+
+    static {
+        // Apply a move and check for a win (what Board.stepGame did), then take it back
+        register("playMove", (size, winLength) -> {
+            BitBoard board = randomPosition(size, winLength, size * size / 3);
+            int[] empty = emptyCells(board);
+            Seed player = (board.getOccupied() % 2 == 0) ? Seed.CROSS : Seed.NOUGHT;
+            int[] next = {0};
+            return () -> {
+                int move = empty[next[0]++ % empty.length];
+                State state = board.play(player, move);
+                board.unplay(move);
+                return state.ordinal();
+            };
+        });
+        // Play a whole random game through GameSession, including the round reset
+        register("randomGame", (size, winLength) -> {
+            GameSession session = new GameSession(size, size, winLength, Integer.MAX_VALUE, "X", "O");
+            AIPlayer random = new RandomAI();
+            return () -> {
+                session.newRound();
+                BitBoard board = session.getBoard();
+                while (!session.isRoundOver()) {
+                    int move = random.selectMove(board, session.getCurrentPlayer(), Long.MAX_VALUE);
+                    session.play(move / size, move % size);
+                }
+                return board.getOccupied();
+            };
+        });
+        // Reset a full board (newGame between rounds)
+        register("newGame", (size, winLength) -> {
+            GameSession session = new GameSession(size, size, winLength, Integer.MAX_VALUE, "X", "O");
+            return () -> {
+                session.newRound();
+                return session.getBoard().getOccupied();
+            };
+        });
+        // Pick a random move on a half-full board
+        register("randomMove", (size, winLength) -> {
+            BitBoard board = randomPosition(size, winLength, size * size / 2);
+            AIPlayer random = new RandomAI();
+            return () -> random.selectMove(board, Seed.CROSS, Long.MAX_VALUE);
+        });
+        // Fixed-depth alpha-beta search from an early position, with a cold transposition table
+        register("minimaxDepth3", (size, winLength) -> {
+            BitBoard board = randomPosition(size, winLength, Math.min(4, size * size / 3));
+            MinimaxAI ai = new MinimaxAI(3, 1, 16);
+            return () -> {
+                ai.clearTable();
+                return ai.selectMove(board, Seed.CROSS, Long.MAX_VALUE);
+            };
+        });
+    }
+
+    private static void register(String name, Benchmark benchmark) {
+        names.add(name);
+        benchmarks.add(benchmark);
+    }
+
+    /** The operations for the JMH benchmarks, found through ServiceLoader */
+    public static final class Operations implements bench.EngineOperations {
+        @Override
+        public LongSupplier operation(String name, int size, int winLength) {
+            return Benchmarks.operation(name, size, winLength);
+        }
+    }
+
+    /** Set up the named benchmark for one board */
+    static LongSupplier operation(String name, int size, int winLength) {
+        int b = names.indexOf(name);
+        if (b < 0) {
+            throw new IllegalArgumentException("Unknown benchmark " + name);
+        }
+        return benchmarks.get(b).setUp(size, winLength)::run;
+    }
+
+    /** Return a position with the given number of random moves played and no winner yet */
+    static BitBoard randomPosition(int size, int winLength, int moves) {
+        Random random = new Random(42);
+        BitBoard board = new BitBoard(size, size, winLength);
+        while (true) {
+            board.reset();
+            Seed player = Seed.CROSS;
+            while (board.getOccupied() < moves && board.getState() == State.PLAYING) {
+                int index = random.nextInt(board.getSize());
+                if (board.isEmpty(index)) {
+                    board.play(player, index);
+                    player = (player == Seed.CROSS) ? Seed.NOUGHT : Seed.CROSS;
+                }
+            }
+            if (board.getState() == State.PLAYING) {
+                return board;
+            }
+        }
+    }
+
+    private static int[] emptyCells(BitBoard board) {
+        int[] cells = new int[board.getSize() - board.getOccupied()];
+        int n = 0;
+        for (int index = 0; index < board.getSize(); ++index) {
+            if (board.isEmpty(index)) {
+                cells[n++] = index;
+            }
+        }
+        return cells;
+    }
+
+    /** Run op repeatedly for about ITERATION_NANOS and return the mean nanoseconds per call */
+    private static double iteration(Operation op) {
+        long calls = 0;
+        long threadId = Thread.currentThread().threadId();
+        long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+        int batch = 1; // doubled until a batch takes long enough to make the clock reads negligible
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            long batchStart = System.nanoTime();
+            for (int i = 0; i < batch; ++i) {
+                sink += op.run();
+            }
+            calls += batch;
+            long now = System.nanoTime();
+            if (now - batchStart < 1_000_000L) {
+                batch *= 2;
+            }
+            elapsed = now - start;
+        } while (elapsed < ITERATION_NANOS);
+        allocatedPerCall = (double) (THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore) / calls;
+        return (double) elapsed / calls;
+    }
+
+    public static void main(String[] args) {
+        String filter = (args.length > 0) ? args[0] : "";
+        System.out.printf("%-16s%6s%6s%16s%12s%12s%n", "Benchmark", "size", "win", "ns/op", "error", "bytes/op");
+        for (int b = 0; b < benchmarks.size(); ++b) {
+            if (!names.get(b).contains(filter)) {
+                continue;
+            }
+            for (int[] shape : BOARDS) {
+                Operation op = benchmarks.get(b).setUp(shape[0], shape[1]);
+                for (int i = 0; i < WARMUP_ITERATIONS; ++i) {
+                    iteration(op);
+                }
+                double[] results = new double[MEASURE_ITERATIONS];
+                double mean = 0;
+                double allocated = 0;
+                for (int i = 0; i < MEASURE_ITERATIONS; ++i) {
+                    results[i] = iteration(op);
+                    mean += results[i] / MEASURE_ITERATIONS;
+                    allocated += allocatedPerCall / MEASURE_ITERATIONS;
+                }
+                double variance = 0;
+                for (double result : results) {
+                    variance += (result - mean) * (result - mean) / (MEASURE_ITERATIONS - 1);
+                }
+                System.out.printf("%-16s%6d%6d%16.1f%12.1f%12.1f%n", names.get(b), shape[0], shape[1], mean, Math.sqrt(variance), allocated);
+            }
+        }
+        if (sink == 42) {
+            System.out.println(); // keeps the sink alive
+        }
+    }
+}
@@ -0,0 +1,373 @@
+import java.util.Arrays;
+
+/**
+ * The BitBoard class is the headless game state engine behind Board.
+ * The position is stored as two bitsets, one per Seed, with cell (row, col) at bit
+ * index row * cols + col. A move only examines the four lines (horizontal, vertical
+ * and both diagonals) through the placed cell, so win detection costs O(K) instead of
+ * rescanning the whole board, and a draw is simply the occupancy count reaching the
+ * number of cells.
+ *
+ * The empty cells are also kept in a list, updated with a swap on every play and
+ * unplay, so picking a uniformly random empty cell or enumerating the legal moves
+ * needs no scan and no allocation.
+ *
+ * Every move is pushed on a move stack together with the state and winning line it
+ * replaced, so undo() takes back the last move in O(1) and restores exactly what was
+ * there before. Once the game is over no further move is accepted, so the state and
+ * winning line always describe the position. Searches play and undo on one
+ * board in place instead of copying it per node.
+ *
+ * Boards of up to 64 cells keep every winning line precomputed as a mask, so a move is
+ * checked with a handful of AND/compare operations. Larger boards (e.g. 15x15 with
+ * five in a row) count contiguous seeds outward from the placed cell instead.
+ *
+ * Board and Cell only render what this engine holds.
+ */
+public class BitBoard {
+    /** Largest board (in cells) that uses the precomputed line masks */
+    public static final int MAX_MASK_CELLS = Long.SIZE;
+
+    /** Row and column steps of the four line directions */
+    private static final int[] DIR_ROW = {0, 1, 1, 1};
+    private static final int[] DIR_COL = {1, 0, 1, -1};
+    private static final State[] STATES = State.values();
+
+    private final int rows, cols, winLength, size;
+
+    /** Mask of every winning line, with the index of its first and last cell (small boards only) */
+    private long[] lineMasks;
+    private int[] lineStart, lineEnd;
+    /** For each cell, the indices (into lineMasks) of the lines passing through it */
+    private int[][] cellLines;
+
+    /** One bit per cell, 64 cells per word */
+    private final long[] crossBits, noughtBits;
+    /** The empty cells in emptyCells[0 .. size - occupied), and the position of each cell in that list */
+    private final int[] emptyCells, emptyPos;
+    private int occupied;
+    /** Cells played, in order, in moves[0 .. occupied); saved[i] packs the state, winStart and winEnd before moves[i] */
+    private final int[] moves;
+    private final long[] saved;
+    private State state;
+    private int winStart, winEnd;
+
+    /** Constructor to build the line masks for a rows x cols board with K = winLength */
+    public BitBoard(int rows, int cols, int winLength) {
+        if (rows <= 0 || cols <= 0) {
+            throw new IllegalArgumentException("Unsupported board size " + rows + "x" + cols);
+        }
+        if (winLength <= 0 || winLength > Math.max(rows, cols)) {
+            throw new IllegalArgumentException("Unsupported win length " + winLength);
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.winLength = winLength;
+        this.size = rows * cols;
+        int words = (size + Long.SIZE - 1) / Long.SIZE;
+        crossBits = new long[words];
+        noughtBits = new long[words];
+        emptyCells = new int[size];
+        emptyPos = new int[size];
+        moves = new int[size];
+        saved = new long[size];
+        if (size <= MAX_MASK_CELLS) {
+            buildLineMasks();
+        }
+        reset();
+    }
+
+    /** Copy constructor; the line tables are immutable and shared with the original */
+    private BitBoard(BitBoard other) {
+        this.rows = other.rows;
+        this.cols = other.cols;
+        this.winLength = other.winLength;
+        this.size = other.size;
+        this.lineMasks = other.lineMasks;
+        this.lineStart = other.lineStart;
+        this.lineEnd = other.lineEnd;
+        this.cellLines = other.cellLines;
+        this.crossBits = other.crossBits.clone();
+        this.noughtBits = other.noughtBits.clone();
+        this.emptyCells = other.emptyCells.clone();
+        this.emptyPos = other.emptyPos.clone();
+        this.moves = other.moves.clone();
+        this.saved = other.saved.clone();
+        this.occupied = other.occupied;
+        this.state = other.state;
+        this.winStart = other.winStart;
+        this.winEnd = other.winEnd;
+    }
+
+    /** Return an independent copy of this position, e.g. for an AI to search on */
+    public BitBoard copy() {
+        return new BitBoard(this);
+    }
+
+    /** Overwrite this position with other, which must have the same dimensions */
+    public void copyFrom(BitBoard other) {
+        if (other.rows != rows || other.cols != cols || other.winLength != winLength) {
+            throw new IllegalArgumentException("Board shapes differ");
+        }
+        System.arraycopy(other.crossBits, 0, crossBits, 0, crossBits.length);
+        System.arraycopy(other.noughtBits, 0, noughtBits, 0, noughtBits.length);
+        System.arraycopy(other.emptyCells, 0, emptyCells, 0, size);
+        System.arraycopy(other.emptyPos, 0, emptyPos, 0, size);
+        System.arraycopy(other.moves, 0, moves, 0, other.occupied);
+        System.arraycopy(other.saved, 0, saved, 0, other.occupied);
+        occupied = other.occupied;
+        state = other.state;
+        winStart = other.winStart;
+        winEnd = other.winEnd;
+    }
+
+    /** Enumerate every run of winLength cells: horizontal, vertical and both diagonals */
+    private void buildLineMasks() {
+        long[] masks = new long[4 * size];
+        int[] starts = new int[4 * size];
+        int[] ends = new int[4 * size];
+        int[] linesPerCell = new int[size];
+        int count = 0;
+        for (int d = 0; d < DIR_ROW.length; ++d) {
+            for (int row = 0; row < rows; ++row) {
+                for (int col = 0; col < cols; ++col) {
+                    int endRow = row + DIR_ROW[d] * (winLength - 1);
+                    int endCol = col + DIR_COL[d] * (winLength - 1);
+                    if (endRow < 0 || endRow >= rows || endCol < 0 || endCol >= cols) {
+                        continue;
+                    }
+                    long mask = 0L;
+                    for (int i = 0; i < winLength; ++i) {
+                        int index = (row + DIR_ROW[d] * i) * cols + (col + DIR_COL[d] * i);
+                        mask |= 1L << index;
+                        linesPerCell[index]++;
+                    }
+                    masks[count] = mask;
+                    starts[count] = row * cols + col;
+                    ends[count] = endRow * cols + endCol;
+                    count++;
+                }
+            }
+        }
+        lineMasks = Arrays.copyOf(masks, count);
+        lineStart = Arrays.copyOf(starts, count);
+        lineEnd = Arrays.copyOf(ends, count);
+
+        cellLines = new int[size][];
+        for (int index = 0; index < size; ++index) {
+            cellLines[index] = new int[linesPerCell[index]];
+            int n = 0;
+            for (int line = 0; line < count; ++line) {
+                if ((lineMasks[line] & (1L << index)) != 0) {
+                    cellLines[index][n++] = line;
+                }
+            }
+        }
+    }
+
+    /** Clear the board, ready for new game */
+    public void reset() {
+        Arrays.fill(crossBits, 0L);
+        Arrays.fill(noughtBits, 0L);
+        for (int index = 0; index < size; ++index) {
+            emptyCells[index] = index;
+            emptyPos[index] = index;
+        }
+        occupied = 0;
+        state = State.PLAYING;
+        winStart = winEnd = -1;
+    }
+
+    /**
+     * Place the player's seed at (row, col) and return the resulting game state.
+     * Only the lines through the placed cell are examined.
+     */
+    public State play(Seed player, int row, int col) {
+        return play(player, row * cols + col);
+    }
+
+    /**
+     * Place the player's seed at the cell with the given index (row * cols + col).
+     * Throws IllegalStateException if the game is already over or the cell is occupied.
+     */
+    public State play(Seed player, int index) {
+        if (state != State.PLAYING) {
+            throw new IllegalStateException("The game is over (" + state + ")");
+        }
+        int word = index >>> 6;
+        long bit = 1L << index;
+        if (((crossBits[word] | noughtBits[word]) & bit) != 0) {
+            throw new IllegalStateException("Cell (" + index / cols + "," + index % cols + ") is already occupied");
+        }
+        long[] bits = (player == Seed.CROSS) ? crossBits : noughtBits;
+        bits[word] |= bit;
+        // Swap the cell with the last empty one, then shrink the list
+        int last = emptyCells[size - occupied - 1];
+        int pos = emptyPos[index];
+        emptyCells[pos] = last;
+        emptyPos[last] = pos;
+        emptyCells[size - occupied - 1] = index;
+        emptyPos[index] = size - occupied - 1;
+        moves[occupied] = index;
+        saved[occupied] = state.ordinal() | (long) (winStart + 1) << 8 | (long) (winEnd + 1) << 32;
+        occupied++;
+
+        boolean won = (lineMasks != null) ? checkLineMasks(bits[0], index) : checkLines(bits, index / cols, index % cols);
+        if (won) {
+            state = (player == Seed.CROSS) ? State.CROSS_WON : State.NOUGHT_WON;
+        } else {
+            state = (occupied == size) ? State.DRAW : State.PLAYING;
+        }
+        return state;
+    }
+
+    /**
+     * Take back the last move and return its cell index, restoring the state and winning
+     * line from before it.
+     */
+    public int undo() {
+        if (occupied == 0) {
+            throw new IllegalStateException("No move to take back");
+        }
+        int index = moves[occupied - 1];
+        int word = index >>> 6;
+        long bit = ~(1L << index);
+        crossBits[word] &= bit;
+        noughtBits[word] &= bit;
+        // Swap the cell to the first slot past the empty list, then grow the list over it
+        int pos = emptyPos[index];
+        int end = size - occupied;
+        int other = emptyCells[end];
+        emptyCells[pos] = other;
+        emptyPos[other] = pos;
+        emptyCells[end] = index;
+        emptyPos[index] = end;
+        occupied--;
+        long before = saved[occupied];
+        state = STATES[(int) (before & 0xFF)];
+        winStart = (int) (before >>> 8 & 0xFFFFFF) - 1;
+        winEnd = (int) (before >>> 32) - 1;
+        return index;
+    }
+
+    /** Take back the seed at the cell with the given index, which must be the last move played (see undo) */
+    public void unplay(int index) {
+        if (occupied == 0 || moves[occupied - 1] != index) {
+            throw new IllegalArgumentException("Cell " + index + " is not the last move played");
+        }
+        undo();
+    }
+
+    /** Return the i-th move played on this board as a cell index, for 0 <= i < getOccupied() */
+    public int getMove(int i) {
+        return moves[i];
+    }
+
+    /** Test the precomputed masks of the lines through the cell at index */
+    private boolean checkLineMasks(long bits, int index) {
+        for (int line : cellLines[index]) {
+            long mask = lineMasks[line];
+            if ((bits & mask) == mask) {
+                winStart = lineStart[line];
+                winEnd = lineEnd[line];
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Count contiguous seeds outward from (row, col) in each of the four directions */
+    private boolean checkLines(long[] bits, int row, int col) {
+        for (int d = 0; d < DIR_ROW.length; ++d) {
+            int dr = DIR_ROW[d], dc = DIR_COL[d];
+            int back = 0;
+            while (back < winLength - 1 && isSet(bits, row - dr * (back + 1), col - dc * (back + 1))) {
+                back++;
+            }
+            int forward = 0;
+            while (back + forward < winLength - 1 && isSet(bits, row + dr * (forward + 1), col + dc * (forward + 1))) {
+                forward++;
+            }
+            if (back + forward + 1 >= winLength) {
+                winStart = (row - dr * back) * cols + (col - dc * back);
+                winEnd = (row + dr * forward) * cols + (col + dc * forward);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isSet(long[] bits, int row, int col) {
+        if (row < 0 || row >= rows || col < 0 || col >= cols) {
+            return false;
+        }
+        int index = row * cols + col;
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /** Return the content of cell (row, col) */
+    public Seed get(int row, int col) {
+        return get(row * cols + col);
+    }
+
+    /** Return the content of the cell with the given index */
+    public Seed get(int index) {
+        long bit = 1L << index;
+        if ((crossBits[index >>> 6] & bit) != 0) return Seed.CROSS;
+        if ((noughtBits[index >>> 6] & bit) != 0) return Seed.NOUGHT;
+        return Seed.NO_SEED;
+    }
+
+    public boolean isEmpty(int row, int col) {
+        return isEmpty(row * cols + col);
+    }
+
+    public boolean isEmpty(int index) {
+        return ((crossBits[index >>> 6] | noughtBits[index >>> 6]) & (1L << index)) == 0;
+    }
+
+    /** Number of empty cells */
+    public int getEmptyCount() {
+        return size - occupied;
+    }
+
+    /** Return the i-th empty cell index, for 0 <= i < getEmptyCount(); the order is unspecified */
+    public int getEmptyCell(int i) {
+        return emptyCells[i];
+    }
+
+    /** Index of the first cell of the winning line, or -1 if nobody has won */
+    public int getWinStart() {
+        return winStart;
+    }
+
+    /** Index of the last cell of the winning line, or -1 if nobody has won */
+    public int getWinEnd() {
+        return winEnd;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public int getOccupied() {
+        return occupied;
+    }
+
+    /** Number of cells on the board */
+    public int getSize() {
+        return size;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getWinLength() {
+        return winLength;
+    }
+}
@@ -1,123 +1,216 @@
 import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CompletableFuture;
 import javax.swing.*;
 
+/**
+ * The Board class renders a BitBoard. The grid is drawn once into a cached image and
+ * the seed sprites come pre-scaled to the cell's seed size from AssetManager, so a repaint only
+ * copies images; and only the cells inside the clip are painted, so a repaint of one
+ * cell (see getCellBounds) costs the same on a 15x15 board as on a 3x3 one.
+ * Each repaint's duration is recorded in Metrics.
+ */
 class Board extends JPanel {
-    public static final int ROWS = 3;
-    public static final int COLS = 3;
-    public static final int CANVAS_WIDTH = Cell.SIZE * COLS;
-    public static final int CANVAS_HEIGHT = Cell.SIZE * ROWS;
+    /** Default (classic) board: 3x3, three in a row */
+    public static final int DEFAULT_SIZE = 3;
+    public static final int DEFAULT_WIN_LENGTH = 3;
+    /** Range of board sizes offered to players */
+    public static final int MIN_SIZE = 3;
+    public static final int MAX_SIZE = 15;
+    /** Largest canvas side; cells shrink below Cell.SIZE to fit larger boards into it */
+    public static final int MAX_CANVAS_SIZE = 600;
     public static final int GRID_WIDTH = 8;
-    public static final int GRID_WIDTH_HALF = GRID_WIDTH / 2;
     public static final Color COLOR_GRID = Color.LIGHT_GRAY;
+    private static final LatencyHistogram PAINT_TIME = Metrics.timer(Metrics.PAINT_TIME);
 
-    Cell[][] cells;
-
-    private int winStartRow = -1, winStartCol = -1;
-    private int winEndRow = -1, winEndCol = -1;
+    private final int rows, cols, winLength;
+    /** Cell width/height in pixels, and grid line width scaled to match */
+    private final int cellSize, gridWidth;
 
-    public Board() {
-        setPreferredSize(new Dimension(Cell.SIZE * COLS, Cell.SIZE * ROWS));
+    Cell[][] cells;
+    /** The game state engine this board renders; it is owned by the GameSession */
+    private final BitBoard engine;
+
+    /** Grid lines on a transparent background, and the seed images scaled to the seed size (fetched on first use) */
+    private BufferedImage gridImage;
+    private final Image[] sprites = new Image[Seed.values().length];
+    @SuppressWarnings("unchecked")
+    private final CompletableFuture<Image>[] spriteLoads =
+            (CompletableFuture<Image>[]) new CompletableFuture<?>[Seed.values().length];
+    private GraphicsConfiguration renderConfig;
+    /** The component this board is painted on, repainted when a sprite arrives */
+    private Component host = this;
+
+    /** Constructor for a view over the given engine */
+    public Board(BitBoard engine) {
+        this.engine = engine;
+        this.rows = engine.getRows();
+        this.cols = engine.getCols();
+        this.winLength = engine.getWinLength();
+        this.cellSize = Math.min(Cell.SIZE, MAX_CANVAS_SIZE / Math.max(rows, cols));
+        this.gridWidth = Math.max(2, GRID_WIDTH * cellSize / Cell.SIZE);
+        setPreferredSize(new Dimension(getCanvasWidth(), getCanvasHeight()));
         initGame();
     }
 
     public void initGame() {
-        cells = new Cell[ROWS][COLS];
-        for (int row = 0; row < ROWS; ++row) {
-            for (int col = 0; col < COLS; ++col) {
-                cells[row][col] = new Cell(row, col);
+        cells = new Cell[rows][cols];
+        for (int row = 0; row < rows; ++row) {
+            for (int col = 0; col < cols; ++col) {
+                cells[row][col] = new Cell(row, col, cellSize);
             }
         }
     }
 
-    public void newGame() {
-        for (int row = 0; row < ROWS; ++row) {
-            for (int col = 0; col < COLS; ++col) {
-                cells[row][col].newGame();
-            }
-        }
-        winStartRow = winStartCol = winEndRow = winEndCol = -1;
+    /** Set the component that paints this board (by calling paintComponent), if it isn't the board itself */
+    public void setHost(Component host) {
+        this.host = host;
     }
 
-    public State stepGame(Seed player, int selectedRow, int selectedCol) {
-        cells[selectedRow][selectedCol].content = player;
+    /** Return true if no seed has been placed at (row, col) */
+    public boolean isEmpty(int row, int col) {
+        return engine.isEmpty(row, col);
+    }
 
-        for (int row = 0; row < ROWS; row++) {
-            if (cells[row][0].content == player && cells[row][1].content == player && cells[row][2].content == player) {
-                winStartRow = row; winStartCol = 0;
-                winEndRow = row; winEndCol = 2;
-                return (player == Seed.CROSS) ? State.CROSS_WON : State.NOUGHT_WON;
-            }
-        }
+    public BitBoard getEngine() {
+        return engine;
+    }
 
+    public int getRows() {
+        return rows;
+    }
 
-        // Check columns for win
-        for (int col = 0; col < COLS; col++) {
-            if (cells[0][col].content == player && cells[1][col].content == player && cells[2][col].content == player) {
-                winStartRow = 0; winStartCol = col;
-                winEndRow = 2; winEndCol = col;
-                return (player == Seed.CROSS) ? State.CROSS_WON : State.NOUGHT_WON;
-            }
+    public int getCols() {
+        return cols;
+    }
+
+    public int getWinLength() {
+        return winLength;
+    }
+
+    public int getCellSize() {
+        return cellSize;
+    }
+
+    public int getCanvasWidth() {
+        return cellSize * cols;
+    }
+
+    public int getCanvasHeight() {
+        return cellSize * rows;
+    }
+
+    /** Return the area covered by cell (row, col), for repainting just that cell */
+    public Rectangle getCellBounds(int row, int col) {
+        return new Rectangle(col * cellSize, row * cellSize, cellSize, cellSize);
+    }
+
+    /** Return the area covered by the winning line, or null if nobody has won */
+    public Rectangle getWinLineBounds() {
+        if (engine.getWinStart() == -1) {
+            return null;
         }
+        Rectangle bounds = getCellBounds(engine.getWinStart() / cols, engine.getWinStart() % cols);
+        bounds.add(getCellBounds(engine.getWinEnd() / cols, engine.getWinEnd() % cols));
+        return bounds;
+    }
 
-        // check diagonal
-        if (cells[0][0].content == player && cells[1][1].content == player && cells[2][2].content == player) {
-            winStartRow = 0; winStartCol = 0;
-            winEndRow = 2; winEndCol = 2;
-            return (player == Seed.CROSS) ? State.CROSS_WON : State.NOUGHT_WON;
+    /** (Re)create the cached grid as an image compatible with the screen being painted on */
+    private void prepareImages(Graphics2D g) {
+        GraphicsConfiguration config = g.getDeviceConfiguration();
+        if (config == renderConfig && gridImage != null) {
+            return;
+        }
+        renderConfig = config;
+
+        gridImage = config.createCompatibleImage(getCanvasWidth(), getCanvasHeight(), Transparency.TRANSLUCENT);
+        Graphics2D gg = gridImage.createGraphics();
+        gg.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        gg.setColor(COLOR_GRID);
+        int gridWidthHalf = gridWidth / 2;
+        for (int row = 1; row < rows; ++row) {
+            gg.fillRoundRect(0, cellSize * row - gridWidthHalf,
+                    cellSize * cols - 1, gridWidth,
+                    gridWidth, gridWidth);
         }
+        for (int col = 1; col < cols; ++col) {
+            gg.fillRoundRect(cellSize * col - gridWidthHalf, 0,
+                    gridWidth, cellSize * rows - 1,
+                    gridWidth, gridWidth);
+        }
+        gg.dispose();
+    }
 
-        if (cells[0][2].content == player && cells[1][1].content == player && cells[2][0].content == player) {
-            winStartRow = 0;
-            winStartCol = 2;
-            winEndRow = 2;
-            winEndCol = 0;
-            return (player == Seed.CROSS) ? State.CROSS_WON : State.NOUGHT_WON;
+    /**
+     * Return the sprite of seed, fetching it the first time one is drawn (so an empty
+     * board never waits on images). Painting never waits either: until the image is
+     * loaded the seed is drawn as a glyph, and the host repaints when it arrives.
+     */
+    private Image sprite(Seed seed) {
+        int s = seed.ordinal();
+        if (sprites[s] == null && seed != Seed.NO_SEED) {
+            if (spriteLoads[s] == null) {
+                spriteLoads[s] = seed.loadImage(cells[0][0].seedSize);
+                spriteLoads[s].thenRunAsync(() -> host.repaint(), SwingUtilities::invokeLater);
+            }
+            if (!spriteLoads[s].isDone()) {
+                return AssetManager.getGlyph(seed.getDisplayName(), cells[0][0].seedSize);
+            }
+            sprites[s] = spriteLoads[s].join();
         }
+        return sprites[s];
+    }
 
-        // check draw
-        for (int row = 0; row < ROWS; ++row) {
-            for (int col = 0; col < COLS; ++col) {
-                if (cells[row][col].content == Seed.NO_SEED) {
-                    return State.PLAYING;
-                }
+    /** Fetch the seed sprites now, waiting for them: for painting off screen (into an image), where no repaint follows */
+    void loadSprites() {
+        for (Seed seed : Seed.values()) {
+            if (seed != Seed.NO_SEED && sprites[seed.ordinal()] == null) {
+                sprites[seed.ordinal()] = seed.getImage(cells[0][0].seedSize);
             }
         }
-        return State.DRAW;
     }
 
     @Override
     protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
-
-        // Draw grid
-        g.setColor(COLOR_GRID);
-        for (int row = 1; row < ROWS; ++row) {
-            g.fillRoundRect(0, Cell.SIZE * row - GRID_WIDTH_HALF,
-                    Cell.SIZE * COLS - 1, GRID_WIDTH,
-                    GRID_WIDTH, GRID_WIDTH);
-        }
-        for (int col = 1; col < COLS; ++col) {
-            g.fillRoundRect(Cell.SIZE * col - GRID_WIDTH_HALF, 0,
-                    GRID_WIDTH, Cell.SIZE * ROWS - 1,
-                    GRID_WIDTH, GRID_WIDTH);
+        Metrics.PaintEvent event = new Metrics.PaintEvent();
+        event.begin();
+        long start = System.nanoTime();
+        prepareImages((Graphics2D) g);
+        g.drawImage(gridImage, 0, 0, null);
+
+        // Only the cells inside the clip need painting
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getCanvasWidth(), getCanvasHeight());
         }
-
-        for (int row = 0; row < ROWS; ++row) {
-            for (int col = 0; col < COLS; ++col) {
-                cells[row][col].paint(g);
+        int firstRow = Math.max(0, clip.y / cellSize);
+        int lastRow = Math.min(rows - 1, (clip.y + clip.height - 1) / cellSize);
+        int firstCol = Math.max(0, clip.x / cellSize);
+        int lastCol = Math.min(cols - 1, (clip.x + clip.width - 1) / cellSize);
+        for (int row = firstRow; row <= lastRow; ++row) {
+            for (int col = firstCol; col <= lastCol; ++col) {
+                cells[row][col].paint(g, sprite(engine.get(row, col)));
             }
         }
 
-        if ((GameMain.getCurrentState() == State.CROSS_WON || GameMain.getCurrentState() == State.NOUGHT_WON)
-                && winStartRow != -1) {
+        State state = engine.getState();
+        if ((state == State.CROSS_WON || state == State.NOUGHT_WON) && engine.getWinStart() != -1) {
+            int winStartRow = engine.getWinStart() / cols, winStartCol = engine.getWinStart() % cols;
+            int winEndRow = engine.getWinEnd() / cols, winEndCol = engine.getWinEnd() % cols;
             g.setColor(Color.RED);
-            int x1 = winStartCol * Cell.SIZE + Cell.SIZE / 2;
-            int y1 = winStartRow * Cell.SIZE + Cell.SIZE / 2;
-            int x2 = winEndCol * Cell.SIZE + Cell.SIZE / 2;
-            int y2 = winEndRow * Cell.SIZE + Cell.SIZE / 2;
+            int x1 = winStartCol * cellSize + cellSize / 2;
+            int y1 = winStartRow * cellSize + cellSize / 2;
+            int x2 = winEndCol * cellSize + cellSize / 2;
+            int y2 = winEndRow * cellSize + cellSize / 2;
             Graphics2D g2 = (Graphics2D) g;
-            g2.setStroke(new BasicStroke(5));
+            g2.setStroke(new BasicStroke(Math.max(2, 5 * cellSize / Cell.SIZE)));
             g2.drawLine(x1, y1, x2, y2);
         }
+        PAINT_TIME.record(System.nanoTime() - start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.cells = (lastRow - firstRow + 1) * (lastCol - firstCol + 1);
+            event.commit();
+        }
     }
 }
\ No newline at end of file
@@ -4,36 +4,39 @@ import java.awt.*;
  */
 public class Cell {
     // Define named constants for drawing
-    public static final int SIZE = 120; // cell width/height (square)
+    public static final int SIZE = 120; // default cell width/height (square)
     // Symbols (cross/nought) are displayed inside a cell, with padding from border
     public static final int PADDING = SIZE / 5;
     public static final int SEED_SIZE = SIZE - PADDING * 2;
 
     // Define properties (package-visible)
-    /** Content of this cell (Seed.EMPTY, Seed.CROSS, or Seed.NOUGHT) */
-    Seed content;
     /** Row and column of this cell */
     int row, col;
+    /** Width/height of this cell, and the padding and seed size scaled to match */
+    int size, padding, seedSize;
 
     /** Constructor to initialize this cell with the specified row and col */
     public Cell(int row, int col) {
-        this.row = row;
-        this.col = col;
-        content = Seed.NO_SEED;
+        this(row, col, SIZE);
     }
 
-    /** Reset this cell's content to EMPTY, ready for new game */
-    public void newGame() {
-        content = Seed.NO_SEED;
+    /** Constructor to initialize this cell with the specified row, col and size in pixels */
+    public Cell(int row, int col, int size) {
+        this.row = row;
+        this.col = col;
+        this.size = size;
+        this.padding = size / 5;
+        this.seedSize = size - padding * 2;
     }
 
-    /** Paint itself on the graphics canvas, given the Graphics context */
-    public void paint(Graphics g) {
+    /**
+     * Paint itself on the graphics canvas, given the Graphics context and the sprite of
+     * this cell's content, already scaled to seedSize (null for an empty cell)
+     */
+    public void paint(Graphics g, Image sprite) {
         // Draw the Seed if it is not empty
-        int x1 = col * SIZE + PADDING;
-        int y1 = row * SIZE + PADDING;
-        if (content == Seed.CROSS || content == Seed.NOUGHT) {
-            g.drawImage(content.getImage(), x1, y1, SEED_SIZE, SEED_SIZE, null);
+        if (sprite != null) {
+            g.drawImage(sprite, col * size + padding, row * size + padding, null);
         }
     }
 }//bismillah bisa
\ No newline at end of file
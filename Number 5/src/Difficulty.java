@@ -0,0 +1,54 @@
+/**
+ * The enum Difficulty lists the AI levels offered in the difficulty selector,
+ * and creates the AIPlayer for each.
+ */
+public enum Difficulty {
+    EASY("Easy"),
+    MEDIUM("Medium"),
+    HARD("Hard"),
+    PERFECT("Perfect"),
+    MCTS("MCTS");
+
+    private final String displayName;
+
+    private Difficulty(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /** Create a new AIPlayer that plays at this level, searching on every core */
+    public AIPlayer createPlayer() {
+        return createPlayer(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a new AIPlayer that plays at this level, searching on up to threads threads.
+     * Its think time and search effort are recorded in Metrics.
+     */
+    public AIPlayer createPlayer(int threads) {
+        return new MeteredAI(newPlayer(threads), displayName);
+    }
+
+    private AIPlayer newPlayer(int threads) {
+        switch (this) {
+            case MEDIUM:
+                return new MinimaxAI(2, 1, 16);
+            case HARD:
+                return new MinimaxAI(4, threads, 18);
+            case PERFECT:
+                return new TablebaseAI(new MinimaxAI(Integer.MAX_VALUE, threads, 20));
+            case MCTS:
+                return new MctsAI(threads, MctsAI.DEFAULT_MAX_PLAYOUTS, MctsAI.DEFAULT_NODE_CAPACITY);
+            default:
+                return new RandomAI();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
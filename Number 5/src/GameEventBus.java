@@ -0,0 +1,78 @@
+import java.util.Arrays;
+
+/**
+ * The GameEventBus class delivers the events of one GameSession to its subscribers.
+ *
+ * Only the session's own thread publishes (a single writer), and publishing is a plain
+ * loop over an array read from one volatile field: no locks, no allocation and no event
+ * objects, so a headless session with no subscribers runs at full speed. Subscribing
+ * and unsubscribing, which are rare, copy the array under a lock and may happen on any
+ * thread; an event already being delivered goes to the listeners present when it started.
+ */
+public final class GameEventBus implements GameListener {
+    private static final GameListener[] NONE = {};
+
+    private volatile GameListener[] listeners = NONE;
+
+    public synchronized void subscribe(GameListener listener) {
+        GameListener[] current = listeners;
+        GameListener[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = listener;
+        listeners = updated;
+    }
+
+    public synchronized void unsubscribe(GameListener listener) {
+        GameListener[] current = listeners;
+        for (int i = 0; i < current.length; ++i) {
+            if (current[i] == listener) {
+                GameListener[] updated = new GameListener[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                listeners = updated;
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void movePlayed(GameSession session, Seed player, int row, int col, State state) {
+        for (GameListener listener : listeners) {
+            listener.movePlayed(session, player, row, col, state);
+        }
+    }
+
+    @Override
+    public void moveUndone(GameSession session, Seed player, int row, int col) {
+        for (GameListener listener : listeners) {
+            listener.moveUndone(session, player, row, col);
+        }
+    }
+
+    @Override
+    public void scoreChanged(GameSession session, int scoreX, int scoreO, int drawScore) {
+        for (GameListener listener : listeners) {
+            listener.scoreChanged(session, scoreX, scoreO, drawScore);
+        }
+    }
+
+    @Override
+    public void roundEnded(GameSession session, State result) {
+        for (GameListener listener : listeners) {
+            listener.roundEnded(session, result);
+        }
+    }
+
+    @Override
+    public void matchEnded(GameSession session) {
+        for (GameListener listener : listeners) {
+            listener.matchEnded(session);
+        }
+    }
+
+    @Override
+    public void roundStarted(GameSession session) {
+        for (GameListener listener : listeners) {
+            listener.roundStarted(session);
+        }
+    }
+}
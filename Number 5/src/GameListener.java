@@ -0,0 +1,37 @@
+/**
+ * A GameListener is told what happens in a GameSession: MovePlayed, ScoreChanged,
+ * RoundEnded and MatchEnded, in that order for the move that ends a match,
+ * MoveUndone when a move is taken back, and RoundStarted when the board is cleared
+ * for a new round. Listeners
+ * subscribe through the session's GameEventBus and override only what they need.
+ *
+ * Events are delivered on the thread driving the session (the Swing event thread for
+ * the game window), inside GameSession.play(), so a listener must be quick and must
+ * not drive the session itself (e.g. start the next round) before play() returns;
+ * a UI defers such work with SwingUtilities.invokeLater.
+ */
+public interface GameListener {
+    /** player placed a seed at (row, col), leaving the round in state */
+    default void movePlayed(GameSession session, Seed player, int row, int col, State state) {
+    }
+
+    /** player's seed at (row, col) was taken back by GameSession.undo() */
+    default void moveUndone(GameSession session, Seed player, int row, int col) {
+    }
+
+    /** A round ended and the score was updated */
+    default void scoreChanged(GameSession session, int scoreX, int scoreO, int drawScore) {
+    }
+
+    /** A round ended with result (CROSS_WON, NOUGHT_WON or DRAW) */
+    default void roundEnded(GameSession session, State result) {
+    }
+
+    /** The last round of the match ended */
+    default void matchEnded(GameSession session) {
+    }
+
+    /** The board was cleared for a new round (GameSession.newRound()), whether or not the last one ended */
+    default void roundStarted(GameSession session) {
+    }
+}
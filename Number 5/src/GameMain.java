@@ -1,7 +1,13 @@
 import java.awt.*;
 import java.awt.event.*;
 import javax.swing.*;
-import java.util.Random;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 public class GameMain extends JPanel {
     private static final long serialVersionUID = 1L;
@@ -12,166 +18,334 @@ public class GameMain extends JPanel {
     public static final Color COLOR_CROSS = Color.RED;
     public static final Color COLOR_NOUGHT = Color.BLUE;
     public static final Font FONT_STATUS = new Font("OCR A Extended", Font.PLAIN, 14);
+    public static final Font FONT_OVERLAY_TITLE = new Font("OCR A Extended", Font.BOLD, 22);
+    public static final Font FONT_OVERLAY = new Font("OCR A Extended", Font.PLAIN, 14);
+    public static final Color COLOR_OVERLAY = new Color(0, 0, 0, 190);
+
+    /**
+     * Where the match stands between moves. Outside PLAYING the result is shown in an
+     * overlay on the board, and a click on one of its options (or the auto-advance
+     * timer) moves the match on; nothing ever waits in a modal dialog.
+     */
+    private enum Phase {
+        /** A round is in progress */
+        PLAYING,
+        /** A round is over and more are to come */
+        ROUND_OVER,
+        /** The last round is over with the score tied: offer a tie-breaker */
+        TIEBREAK_OFFER,
+        /** The match is over; the next one starts with the same settings */
+        MATCH_OVER
+    }
 
+    /** The match being played; this panel is only a view over it */
+    private GameSession session;
     private Board board;
-    private static State currentState;
-    private static Seed currentPlayer;
     private JLabel statusBar;
     private JButton restartButton;
-    private JComboBox<String> difficultySelect;
+    private JComboBox<Difficulty> difficultySelect;
 
-    private Random rand = new Random();
     private boolean vsComputer = true;
-    private String aiDifficulty = "Easy";
-
-    private static final int AI_DELAY_MS = 1000; // 1 detik delay
-    private Timer aiTimer;
+    private Difficulty aiDifficulty = Difficulty.EASY;
+    /** One AI per difficulty, kept so its transposition table survives between moves */
+    private final Map<Difficulty, AIPlayer> aiPlayers = new EnumMap<>(Difficulty.class);
+    /** Bumped on every new game, so a search finishing late for an old game is ignored */
+    private int gameGeneration = 0;
+    /** The computer's search in progress, if any */
+    private SwingWorker<Integer, Void> aiSearch;
+
+    /** Default hard deadline for each AI move; adjustable from the control panel */
+    public static final int DEFAULT_AI_MOVE_TIME_MS = 1000;
+    private int aiMoveTimeMs = DEFAULT_AI_MOVE_TIME_MS;
+    private JSpinner moveTimeSpinner;
     private boolean isAIThinking = false;
 
-    private int scoreX = 0;
-    private int scoreO = 0;
-    private int drawScore = 0;
     private String playerXName = "Player X";
     private String playerOName = "Player O";
     private boolean twoPlayers = false;
+    /** Computer against computer, e.g. for an unattended kiosk */
+    private boolean demo = false;
+
+    private Phase phase = Phase.PLAYING;
+    /** Overlay content for the current phase, and the click area of each option */
+    private String overlayTitle;
+    private String[] overlayLines = new String[0];
+    private String[] overlayOptions = new String[0];
+    private Rectangle[] optionBounds = new Rectangle[0];
+    /** Ties broken by an extra round in this match; auto-advance plays at most MAX_AUTO_TIEBREAKS */
+    private int tiebreaks = 0;
+    public static final int MAX_AUTO_TIEBREAKS = 1;
+
+    /** Default pause before an overlay advances by itself */
+    public static final int DEFAULT_AUTO_ADVANCE_MS = 1500;
+    private JCheckBox autoAdvanceBox;
+    private JSpinner autoDelaySpinner;
+    private final Timer autoAdvanceTimer = new Timer(DEFAULT_AUTO_ADVANCE_MS, e -> advance(defaultOption()));
+
+    private int boardSize = Board.DEFAULT_SIZE;
+    private int winLength = Board.DEFAULT_WIN_LENGTH;
 
     private int maxRounds = 1;
-    private int roundsPlayed = 0;
-    private boolean gameOver = false;
 
+    /** Every finished match is appended to this log (see GameRecordReader) */
+    public static final String RECORD_FILE = "tictactoe-games.tttr";
+    private final GameRecordWriter recorder = openRecorder();
+    /** Player statistics, kept across runs */
+    public static final String STATS_FILE = "tictactoe-stats.txt";
+    private final StatsStore stats = openStats();
+    /** With -Dtictactoe.spectators=port, every match is streamed to viewers there (see SpectatorClient) */
+    private final SpectatorServer spectators = openSpectators();
+    private JButton leaderboardButton;
+    private JButton undoButton, redoButton;
+    /** Set while redo() replays moves, so the computer is not asked to move in between */
+    private boolean replaying = false;
+
+    /** With -Dtictactoe.startup.exit=true, exit as soon as the first frame is up (see StartupBenchmark) */
+    private static final boolean STARTUP_PROBE = Boolean.getBoolean("tictactoe.startup.exit");
+    /**
+     * With -Dtictactoe.data.dir=dir, the game log and statistics are kept in dir instead
+     * of the user's home directory. A startup probe without it keeps neither, so
+     * measuring startup never touches the player's files.
+     */
+    private static final String DATA_DIR = System.getProperty("tictactoe.data.dir");
+    private static boolean firstFramePainted = false;
+
+    /** Constructor for a panel showing a default match; setUpMatch() asks the players for theirs */
     public GameMain() {
-        showPlayerSelectionDialog();
-
         super.setLayout(new BorderLayout());
 
-        // Inisialisasi timer untuk AI
-        aiTimer = new Timer(AI_DELAY_MS, e -> {
-            if (isAIThinking) {
-                makeAIMove();
-                isAIThinking = false;
-                repaint();
-            }
-        });
-        aiTimer.setRepeats(false); // Hanya eksekusi sekali
-
         super.addMouseListener(new MouseAdapter() {
             @Override
             public void mouseClicked(MouseEvent e) {
-                if (currentState == State.PLAYING && !isAIThinking) {
+                if (phase != Phase.PLAYING) {
+                    int option = optionAt(e.getPoint());
+                    if (option >= 0) {
+                        advance(option);
+                    }
+                    return;
+                }
+                if (!session.isRoundOver() && !isAIThinking && !isComputer(session.getCurrentPlayer())) {
                     int mouseX = e.getX();
                     int mouseY = e.getY();
-                    int row = mouseY / Cell.SIZE;
-                    int col = mouseX / Cell.SIZE;
-
-                    if (row >= 0 && row < Board.ROWS && col >= 0 && col < Board.COLS
-                            && board.cells[row][col].content == Seed.NO_SEED) {
-
-                        currentState = board.stepGame(currentPlayer, row, col);
-
-                        if (currentState != State.PLAYING ) {
-                            roundsPlayed++;
-                        }
-
-                        updateScoreIfNeeded();
-                        repaint();
-
-                        if (currentState != State.PLAYING) {
-                            if (roundsPlayed >= maxRounds) {
-                                gameOver = true;
-                                showFinalResult();
-                            } else {
-                                showNextRoundDialog(getRoundResultMessage());
-                            }
-                        } else {
-                            currentPlayer = (currentPlayer == Seed.CROSS) ? Seed.NOUGHT : Seed.CROSS;
-
-                            if (vsComputer && currentPlayer == Seed.NOUGHT) {
-                                isAIThinking = true;
-                                aiTimer.start();
-                            }
-                        }
+                    int row = mouseY / board.getCellSize();
+                    int col = mouseX / board.getCellSize();
+
+                    if (row >= 0 && row < board.getRows() && col >= 0 && col < board.getCols()
+                            && board.isEmpty(row, col)) {
+                        session.play(row, col); // the listeners below take it from here
                     }
                 }
             }
         });
 
         restartButton = new JButton("Restart");
-        restartButton.addActionListener(e -> {
-            showPlayerSelectionDialog();
-            initGame();
-            newGame();
-            repaint();
-        });
+        restartButton.addActionListener(e -> setUpMatch());
+
+        undoButton = new JButton("Undo");
+        undoButton.addActionListener(e -> undoMove());
+        redoButton = new JButton("Redo");
+        redoButton.addActionListener(e -> redoMove());
+
+        leaderboardButton = new JButton("Leaderboard");
+        leaderboardButton.addActionListener(e -> showLeaderboard());
 
-        difficultySelect = new JComboBox<>(new String[]{"Easy"});
-        difficultySelect.addActionListener(e -> aiDifficulty = (String) difficultySelect.getSelectedItem());
+        difficultySelect = new JComboBox<>(Difficulty.values());
+        difficultySelect.addActionListener(e -> aiDifficulty = (Difficulty) difficultySelect.getSelectedItem());
 
-        setPreferredSize(new Dimension(Board.CANVAS_WIDTH, Board.CANVAS_HEIGHT));
+        moveTimeSpinner = new JSpinner(new SpinnerNumberModel(aiMoveTimeMs, 100, 30000, 100));
+        moveTimeSpinner.addChangeListener(e -> aiMoveTimeMs = (Integer) moveTimeSpinner.getValue());
+
+        autoAdvanceTimer.setRepeats(false);
+        autoAdvanceBox = new JCheckBox("Auto", demo);
+        autoAdvanceBox.addActionListener(e -> scheduleAutoAdvance());
+        autoDelaySpinner = new JSpinner(new SpinnerNumberModel(DEFAULT_AUTO_ADVANCE_MS, 0, 10000, 250));
+        autoDelaySpinner.addChangeListener(e -> autoAdvanceTimer.setInitialDelay((Integer) autoDelaySpinner.getValue()));
+
+        setBackground(COLOR_BG);
         setBorder(BorderFactory.createLineBorder(COLOR_BG_STATUS, 2, false));
 
         initGame();
         newGame();
     }
 
-    private void showNextRoundDialog(String message) {
-        int response = JOptionPane.showOptionDialog(this,
-                message + "\nKlik NEXT untuk menuju ronde berikutnya.",
-                "Ronde Selesai",
-                JOptionPane.DEFAULT_OPTION,
-                JOptionPane.INFORMATION_MESSAGE,
-                null,
-                new String[]{"NEXT"},
-                "NEXT");
-        if (response == 0) {
-            newGame();
-            repaint();
+    /** Ask for the players and board, then start that match */
+    public void setUpMatch() {
+        cancelAISearch(); // a demo keeps playing behind the dialog otherwise
+        showPlayerSelectionDialog();
+        if (demo) {
+            autoAdvanceBox.setSelected(true);
         }
+        initGame();
+        newGame();
+        Window window = SwingUtilities.getWindowAncestor(this);
+        if (window != null) {
+            window.pack(); // board size may have changed
+        }
+        repaint();
     }
 
     private String getRoundResultMessage() {
-        if (currentState == State.CROSS_WON) {
-            return playerXName + " menang ronde ini!";
-        } else if (currentState == State.NOUGHT_WON) {
-            return playerOName + " menang ronde ini!";
+        if (session.getCurrentState() == State.CROSS_WON) {
+            return session.getPlayerXName() + " menang ronde ini!";
+        } else if (session.getCurrentState() == State.NOUGHT_WON) {
+            return session.getPlayerOName() + " menang ronde ini!";
         } else {
             return "Ronde ini berakhir tanpa pemenang.";
         }
     }
 
-    private void showFinalResult() {
+    /** A round has ended: decide where the match goes next and show it */
+    private void roundOver() {
+        if (!session.isMatchOver()) {
+            enterPhase(Phase.ROUND_OVER, "Ronde Selesai",
+                    new String[]{getRoundResultMessage()}, new String[]{"NEXT"});
+        } else if (session.getScoreX() == session.getScoreO()) {
+            enterPhase(Phase.TIEBREAK_OFFER, "Ronde Tambahan",
+                    new String[]{"Skor akhir imbang.", "Tambah 1 ronde penentu?"}, new String[]{"Ya", "Tidak"});
+        } else {
+            matchOver();
+        }
+    }
+
+    private void matchOver() {
+        int scoreX = session.getScoreX();
+        int scoreO = session.getScoreO();
         String resultMessage;
         if (scoreX > scoreO) {
-            resultMessage = playerXName + " menang pertandingan!";
+            resultMessage = session.getPlayerXName() + " menang pertandingan!";
         } else if (scoreO > scoreX) {
-            resultMessage = playerOName + " menang pertandingan!";
+            resultMessage = session.getPlayerOName() + " menang pertandingan!";
         } else {
-            int response = JOptionPane.showConfirmDialog(this,
-                    "Skor akhir imbang. Apakah ingin menambah 1 ronde penentu?",
-                    "Ronde Tambahan",
-                    JOptionPane.YES_NO_OPTION);
-            if (response == JOptionPane.YES_OPTION) {
-                maxRounds++;
-                gameOver = false;
+            resultMessage = "Pertandingan berakhir seri!";
+        }
+        recordMatch();
+        enterPhase(Phase.MATCH_OVER, "Hasil Akhir", new String[]{
+                "Skor akhir:",
+                session.getPlayerXName() + ": " + scoreX,
+                session.getPlayerOName() + ": " + scoreO,
+                resultMessage}, new String[]{"Main Lagi"});
+    }
+
+    /** Move the match on from the current phase with the chosen overlay option */
+    private void advance(int option) {
+        autoAdvanceTimer.stop();
+        switch (phase) {
+            case ROUND_OVER:
+                newGame();
+                break;
+            case TIEBREAK_OFFER:
+                if (option == 0) {
+                    tiebreaks++;
+                    session.addTiebreakRound();
+                    newGame();
+                } else {
+                    matchOver();
+                }
+                break;
+            case MATCH_OVER:
+                initGame(); // same players and settings
                 newGame();
-                repaint();
-                return;
-            } else {
-                resultMessage = "Pertandingan berakhir seri!";
+                break;
+            default:
+                break;
+        }
+    }
+
+    /** The option auto-advance picks: play a tie-breaker, unless enough have been played */
+    private int defaultOption() {
+        return (phase == Phase.TIEBREAK_OFFER && tiebreaks >= MAX_AUTO_TIEBREAKS) ? 1 : 0;
+    }
+
+    private void enterPhase(Phase next, String title, String[] lines, String[] options) {
+        phase = next;
+        overlayTitle = title;
+        overlayLines = lines;
+        overlayOptions = options;
+        layoutOverlay();
+        scheduleAutoAdvance();
+        repaint();
+    }
+
+    /** (Re)start the auto-advance timer if it is enabled and an overlay is showing */
+    private void scheduleAutoAdvance() {
+        autoAdvanceTimer.stop();
+        if (phase != Phase.PLAYING && autoAdvanceBox != null && autoAdvanceBox.isSelected()) {
+            autoAdvanceTimer.start();
+        }
+    }
+
+    /** Place the option buttons side by side near the bottom of the board */
+    private void layoutOverlay() {
+        int width = board.getCanvasWidth(), height = board.getCanvasHeight();
+        int buttonWidth = Math.min(120, (width - 20) / Math.max(1, overlayOptions.length) - 10);
+        int buttonHeight = 32;
+        int total = overlayOptions.length * buttonWidth + (overlayOptions.length - 1) * 10;
+        int x = (width - total) / 2;
+        int y = height - buttonHeight - Math.max(12, height / 10);
+        optionBounds = new Rectangle[overlayOptions.length];
+        for (int i = 0; i < overlayOptions.length; ++i) {
+            optionBounds[i] = new Rectangle(x + i * (buttonWidth + 10), y, buttonWidth, buttonHeight);
+        }
+    }
+
+    /** The overlay option under point; with a single option, a click anywhere picks it */
+    private int optionAt(Point point) {
+        if (optionBounds.length == 1) {
+            return 0;
+        }
+        for (int i = 0; i < optionBounds.length; ++i) {
+            if (optionBounds[i].contains(point)) {
+                return i;
             }
         }
+        return -1;
+    }
+
+    private void paintOverlay(Graphics2D g) {
+        int width = board.getCanvasWidth(), height = board.getCanvasHeight();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setColor(COLOR_OVERLAY);
+        g.fillRect(0, 0, width, height);
+
+        g.setColor(Color.WHITE);
+        g.setFont(FONT_OVERLAY_TITLE);
+        FontMetrics fm = g.getFontMetrics();
+        int y = Math.max(fm.getAscent() + 10, height / 5);
+        g.drawString(overlayTitle, (width - fm.stringWidth(overlayTitle)) / 2, y);
+        g.setFont(FONT_OVERLAY);
+        fm = g.getFontMetrics();
+        y += fm.getHeight() * 2;
+        for (String line : overlayLines) {
+            g.drawString(line, (width - fm.stringWidth(line)) / 2, y);
+            y += fm.getHeight();
+        }
+        if (autoAdvanceBox.isSelected()) {
+            String hint = "Lanjut otomatis: " + overlayOptions[defaultOption()];
+            g.setColor(Color.LIGHT_GRAY);
+            g.drawString(hint, (width - fm.stringWidth(hint)) / 2, y + fm.getHeight());
+        }
 
-        JOptionPane.showMessageDialog(this,
-                "Permainan selesai!\n\nSkor akhir:\n" +
-                        playerXName + ": " + scoreX + "\n" +
-                        playerOName + ": " + scoreO + "\n\n" + resultMessage,
-                "Hasil Akhir",
-                JOptionPane.INFORMATION_MESSAGE);
+        for (int i = 0; i < overlayOptions.length; ++i) {
+            Rectangle r = optionBounds[i];
+            g.setColor(COLOR_BG_STATUS);
+            g.fillRoundRect(r.x, r.y, r.width, r.height, 10, 10);
+            g.setColor(Color.BLACK);
+            g.drawString(overlayOptions[i], r.x + (r.width - fm.stringWidth(overlayOptions[i])) / 2,
+                    r.y + (r.height + fm.getAscent() - fm.getDescent()) / 2);
+        }
     }
 
     public JPanel getControlPanel() {
         JPanel panel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
         panel.add(new JLabel("AI Difficulty:"));
         panel.add(difficultySelect);
+        panel.add(new JLabel("AI Time (ms):"));
+        panel.add(moveTimeSpinner);
+        panel.add(autoAdvanceBox);
+        panel.add(autoDelaySpinner);
+        panel.add(undoButton);
+        panel.add(redoButton);
+        panel.add(leaderboardButton);
         panel.add(restartButton);
         return panel;
     }
@@ -181,13 +355,15 @@ public class GameMain extends JPanel {
     }
 
     private void showPlayerSelectionDialog() {
-        JPanel panel = new JPanel(new GridLayout(3, 2, 5, 5));
+        JPanel panel = new JPanel(new GridLayout(6, 2, 5, 5));
 
         JRadioButton singlePlayerBtn = new JRadioButton("Single Player (vs Computer)", true);
         JRadioButton twoPlayerBtn = new JRadioButton("Two Players");
+        JRadioButton demoBtn = new JRadioButton("Demo (Computer vs Computer)");
         ButtonGroup group = new ButtonGroup();
         group.add(singlePlayerBtn);
         group.add(twoPlayerBtn);
+        group.add(demoBtn);
 
         JLabel player1Label = new JLabel("Player X Name:");
         JTextField player1Field = new JTextField("Player 1");
@@ -199,6 +375,9 @@ public class GameMain extends JPanel {
         singlePlayerBtn.addItemListener(e -> {
             vsComputer = true;
             twoPlayers = false;
+            demo = false;
+            player1Field.setEnabled(true);
+            player1Field.setText("Player 1");
             player2Field.setEnabled(false);
             player2Field.setText("Computer");
         });
@@ -206,17 +385,38 @@ public class GameMain extends JPanel {
         twoPlayerBtn.addItemListener(e -> {
             vsComputer = false;
             twoPlayers = true;
+            demo = false;
+            player1Field.setEnabled(true);
+            player1Field.setText("Player 1");
             player2Field.setEnabled(true);
             player2Field.setText("Player 2");
         });
 
+        demoBtn.addItemListener(e -> {
+            vsComputer = true;
+            twoPlayers = false;
+            demo = true;
+            player1Field.setEnabled(false);
+            player1Field.setText("Computer X");
+            player2Field.setEnabled(false);
+            player2Field.setText("Computer O");
+        });
+
 
         panel.add(singlePlayerBtn);
         panel.add(twoPlayerBtn);
+        panel.add(demoBtn);
+        panel.add(new JLabel());
         panel.add(player1Label);
         panel.add(player1Field);
         panel.add(player2Label);
         panel.add(player2Field);
+        panel.add(new JLabel("Board Size (" + Board.MIN_SIZE + "-" + Board.MAX_SIZE + "):"));
+        JTextField sizeField = new JTextField(String.valueOf(boardSize));
+        panel.add(sizeField);
+        panel.add(new JLabel("Win Length:"));
+        JTextField winLengthField = new JTextField(String.valueOf(winLength));
+        panel.add(winLengthField);
 
         int result = JOptionPane.showConfirmDialog(
                 null,
@@ -232,6 +432,19 @@ public class GameMain extends JPanel {
 
             if (playerXName.isEmpty()) playerXName = "Player X";
             if (playerOName.isEmpty()) playerOName = twoPlayers ? "Player O" : "Computer";
+
+            try {
+                boardSize = Integer.parseInt(sizeField.getText().trim());
+                boardSize = Math.max(Board.MIN_SIZE, Math.min(Board.MAX_SIZE, boardSize));
+            } catch (NumberFormatException e) {
+                boardSize = Board.DEFAULT_SIZE;
+            }
+            try {
+                winLength = Integer.parseInt(winLengthField.getText().trim());
+                winLength = Math.max(Board.MIN_SIZE, Math.min(boardSize, winLength));
+            } catch (NumberFormatException e) {
+                winLength = Math.min(boardSize, Board.DEFAULT_WIN_LENGTH);
+            }
         }
 
     String inputRounds = JOptionPane.showInputDialog(
@@ -249,76 +462,316 @@ public class GameMain extends JPanel {
     }
 }
 
+    /** Start a new match; the board and its cells are reused when the size and win length are unchanged */
     public void initGame() {
-        board = new Board();
-        roundsPlayed = 0;
-        scoreX = 0;
-        scoreO = 0;
-        drawScore = 0;
-        gameOver = false;
+        if (session != null) {
+            recordMatch(); // the rounds finished so far, if the match was abandoned
+            if (spectators != null) {
+                spectators.unwatch(session);
+            }
+        }
+        tiebreaks = 0;
+        if (board != null && board.getRows() == boardSize && board.getCols() == boardSize
+                && board.getWinLength() == winLength) {
+            session = new GameSession(board.getEngine(), maxRounds, playerXName, playerOName);
+            attach(session);
+            return;
+        }
+        session = new GameSession(boardSize, boardSize, winLength, maxRounds, playerXName, playerOName);
+        attach(session);
+        board = new Board(session.getBoard());
+        board.setHost(this); // the board is painted by this panel, not added to it
+        setPreferredSize(new Dimension(board.getCanvasWidth(), board.getCanvasHeight()));
     }
 
-    public void newGame() {
-        board.newGame();
-        currentPlayer = Seed.CROSS;
-        currentState = State.PLAYING;
-        isAIThinking = false; // Reset status AI
-        aiTimer.stop(); // Hentikan timer jika ada
+    /** Return the directory for the game log and statistics, or null to keep neither */
+    private static Path dataDirectory() {
+        if (DATA_DIR != null) {
+            return Paths.get(DATA_DIR);
+        }
+        return STARTUP_PROBE ? null : Paths.get(System.getProperty("user.home"));
     }
 
-    private void makeAIMove() {
-        int[] move = getRandomMove();
-        currentState = board.stepGame(Seed.NOUGHT, move[0], move[1]);
+    /** Open the game log in the data directory; without it, games are simply not recorded */
+    private static GameRecordWriter openRecorder() {
+        Path dir = dataDirectory();
+        if (dir == null) {
+            return null;
+        }
+        try {
+            return new GameRecordWriter(dir.resolve(RECORD_FILE));
+        } catch (IOException e) {
+            System.err.println("Games will not be recorded: " + e.getMessage());
+            return null;
+        }
+    }
 
-        if (currentState != State.PLAYING ) {
-            roundsPlayed++;
+    /** Open the statistics store in the data directory, saving it on exit */
+    private static StatsStore openStats() {
+        Path dir = dataDirectory();
+        if (dir == null) {
+            return null;
         }
+        try {
+            StatsStore store = new StatsStore(dir.resolve(STATS_FILE));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    store.close();
+                } catch (IOException e) {
+                    System.err.println("Couldn't save player statistics: " + e.getMessage());
+                }
+            }));
+            return store;
+        } catch (IOException e) {
+            System.err.println("Player statistics will not be kept: " + e.getMessage());
+            return null;
+        }
+    }
 
-        updateScoreIfNeeded();
+    private static SpectatorServer openSpectators() {
+        Integer port = Integer.getInteger("tictactoe.spectators");
+        if (port == null) {
+            return null;
+        }
+        try {
+            return new SpectatorServer(port);
+        } catch (IOException e) {
+            System.err.println("Spectators cannot watch: " + e.getMessage());
+            return null;
+        }
+    }
 
-        if (currentState == State.PLAYING) {
-            currentPlayer = Seed.CROSS;
+    private void showLeaderboard() {
+        StringBuilder sb = new StringBuilder();
+        if (stats == null || stats.getLeaderboard(1).isEmpty()) {
+            sb.append("Belum ada permainan tercatat.");
         } else {
-            if (roundsPlayed >= maxRounds) {
-                gameOver = true;
-                showFinalResult();
-            } else {
-                showNextRoundDialog(getRoundResultMessage());
+            int rank = 1;
+            for (StatsStore.PlayerStats p : stats.getLeaderboard(10)) {
+                sb.append(String.format("%d. %s  -  %d menang, %d kalah, %d seri (streak terbaik %d, rata-rata %.1f langkah)%n",
+                        rank++, p.getName(), p.getWins(), p.getLosses(), p.getDraws(),
+                        p.getBestStreak(), p.getAverageGameLength()));
+            }
+        }
+        JOptionPane.showMessageDialog(this, sb.toString(), "Papan Peringkat", JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    private void recordMatch() {
+        try {
+            session.recordMatch();
+        } catch (IOException e) {
+            System.err.println("Couldn't record the match: " + e.getMessage());
+        }
+    }
+
+    public void newGame() {
+        session.newRound();
+        cancelAISearch();
+        phase = Phase.PLAYING;
+        autoAdvanceTimer.stop();
+        repaint();
+        resumeComputer();
+    }
+
+    /** Return true if the computer plays this seed: always O against the computer, and both in a demo */
+    private boolean isComputer(Seed player) {
+        return vsComputer && (player == Seed.NOUGHT || demo);
+    }
+
+    /**
+     * Run the AI search on a worker thread, on a copy of the board, so the Swing UI
+     * never freezes while the computer thinks. The search stops at the move-time
+     * deadline with its best move so far, which is applied back on the EDT.
+     */
+    private void startAISearch(Seed player) {
+        final int generation = gameGeneration;
+        final long moveTimeNanos = aiMoveTimeMs * 1_000_000L;
+        final BitBoard position = session.getBoard().copy();
+        final AIPlayer ai = aiPlayers.computeIfAbsent(aiDifficulty, Difficulty::createPlayer);
+        aiSearch = new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() {
+                return ai.selectMove(position, player, System.nanoTime() + moveTimeNanos);
+            }
+
+            @Override
+            protected void done() {
+                if (generation != gameGeneration || !isAIThinking) {
+                    return; // the game was restarted while searching
+                }
+                isAIThinking = false; // before the move, which may start the other side's search
+                aiSearch = null;
+                try {
+                    makeAIMove(get());
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        aiSearch.execute();
+    }
+
+    /**
+     * Abandon the search in progress: its result is ignored, and its thread is
+     * interrupted so the AI stops at once rather than at its deadline (the next search
+     * on the same AI would wait for it).
+     */
+    private void cancelAISearch() {
+        gameGeneration++;
+        isAIThinking = false;
+        if (aiSearch != null) {
+            aiSearch.cancel(true);
+            aiSearch = null;
+        }
+    }
+
+    /**
+     * Take back the last move, and against the computer also its reply, so it is a human's
+     * turn again. A search in progress is abandoned.
+     */
+    private void undoMove() {
+        if (phase != Phase.PLAYING || !session.canUndo()) {
+            return;
+        }
+        cancelAISearch();
+        session.undo();
+        while (session.canUndo() && isComputer(session.getCurrentPlayer()) && !demo) {
+            session.undo();
+        }
+        resumeComputer();
+    }
+
+    /** Replay the last undone move, and against the computer also its reply if that was undone too */
+    private void redoMove() {
+        if (phase != Phase.PLAYING || !session.canRedo() || isAIThinking) {
+            return;
+        }
+        replaying = true;
+        try {
+            session.redo();
+            while (session.canRedo() && isComputer(session.getCurrentPlayer()) && !demo) {
+                session.redo();
             }
+        } finally {
+            replaying = false;
         }
+        resumeComputer();
     }
 
-    private int[] getRandomMove() {
-        int row, col;
-        do {
-            row = rand.nextInt(Board.ROWS);
-            col = rand.nextInt(Board.COLS);
-        } while (board.cells[row][col].content != Seed.NO_SEED);
-        return new int[]{row, col};
+    /** Start the computer's search if it is its turn and it is not already thinking */
+    private void resumeComputer() {
+        if (!session.isRoundOver() && !isAIThinking && isComputer(session.getCurrentPlayer())) {
+            isAIThinking = true;
+            startAISearch(session.getCurrentPlayer());
+        }
+    }
+
+    private void makeAIMove(int move) {
+        session.play(move / board.getCols(), move % board.getCols());
     }
 
-    private void updateScoreIfNeeded() {
-        if (currentState == State.CROSS_WON) {
-            scoreX++;
-        } else if (currentState == State.NOUGHT_WON) {
-            scoreO++;
+    /** Hook a new session up to the game log, and subscribe this view, the sounds, the statistics and the spectators to it */
+    private void attach(GameSession newSession) {
+        newSession.setRecorder(recorder);
+        newSession.getEvents().subscribe(view);
+        newSession.getEvents().subscribe(sounds);
+        if (stats != null) {
+            newSession.getEvents().subscribe(stats);
+        }
+        if (spectators != null) {
+            spectators.watch(newSession);
         }
     }
 
+    /**
+     * The window's part in a session: repaint only the cell just played and, once the
+     * round is won, the winning line; hand the turn to the computer; and once a round
+     * is over, move the match to its next phase after play() has returned.
+     */
+    private final GameListener view = new GameListener() {
+        @Override
+        public void movePlayed(GameSession s, Seed player, int row, int col, State state) {
+            repaint(board.getCellBounds(row, col));
+            Rectangle winLine = board.getWinLineBounds();
+            if (winLine != null) {
+                repaint(winLine);
+            }
+            if (state == State.PLAYING && isComputer(s.getCurrentPlayer()) && !replaying) {
+                isAIThinking = true;
+                startAISearch(s.getCurrentPlayer());
+            }
+        }
+
+        @Override
+        public void moveUndone(GameSession s, Seed player, int row, int col) {
+            repaint(board.getCellBounds(row, col));
+        }
+
+        @Override
+        public void scoreChanged(GameSession s, int scoreX, int scoreO, int drawScore) {
+            if (statusBar != null) {
+                statusBar.setText(s.getPlayerXName() + " " + scoreX + " - " + scoreO + " " + s.getPlayerOName()
+                        + "   (seri " + drawScore + ")");
+            }
+        }
+
+        @Override
+        public void roundEnded(GameSession s, State result) {
+            SwingUtilities.invokeLater(() -> {
+                if (s != session) {
+                    return; // restarted meanwhile
+                }
+                roundOver();
+            });
+        }
+    };
+
+    /** Move and end-of-round sounds (queued; playing never blocks the EDT) */
+    private final GameListener sounds = new GameListener() {
+        @Override
+        public void movePlayed(GameSession s, Seed player, int row, int col, State state) {
+            if (state == State.PLAYING) {
+                (player == Seed.CROSS ? SoundEffect.CROSS : SoundEffect.NOUGHT).play();
+            }
+        }
+
+        @Override
+        public void roundEnded(GameSession s, State result) {
+            SoundEffect.GAME_OVER.play();
+        }
+    };
+
     @Override
     public void paintComponent(Graphics g) {
         super.paintComponent(g);
-        setBackground(COLOR_BG);
         board.paintComponent(g);
+        if (phase != Phase.PLAYING) {
+            paintOverlay((Graphics2D) g);
+        }
+        if (!firstFramePainted) {
+            firstFramePainted = true;
+            SwingUtilities.invokeLater(GameMain::firstFrameShown); // once the event queue is free for input
+        }
     }
 
-
-
-    public static State getCurrentState() {
-        return currentState;
+    /** Record the time from JVM launch to the first interactive frame, and report it to a startup probe */
+    private static void firstFrameShown() {
+        long launched = ProcessHandle.current().info().startInstant()
+                .map(Instant::toEpochMilli).orElse(System.currentTimeMillis());
+        long millis = System.currentTimeMillis() - launched;
+        Metrics.timer(Metrics.FIRST_FRAME_TIME).record(millis * 1_000_000L);
+        if (STARTUP_PROBE) {
+            System.out.println("First frame in " + millis + " ms"); // read by StartupBenchmark
+            System.exit(0);
+        }
     }
 
+    /**
+     * The frame is shown first, with an empty default board, which needs no assets; the
+     * images and sounds load behind it and the player setup opens over it.
+     */
     public static void main(String[] args) {
+        Metrics.startReporter();
         SwingUtilities.invokeLater(() -> {
             JFrame frame = new JFrame(TITLE);
             frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -343,10 +796,15 @@ public class GameMain extends JPanel {
             frame.add(gamePanel, BorderLayout.CENTER);
             frame.add(bottomPanel, BorderLayout.SOUTH);
 
-            frame.setSize(Board.CANVAS_WIDTH + 13, Board.CANVAS_HEIGHT + 70);
+            frame.pack();
             frame.setResizable(false);
             frame.setLocationRelativeTo(null);
             frame.setVisible(true);
+
+            AssetManager.preload(); // the first seed is drawn only after a move
+            if (!STARTUP_PROBE) {
+                SwingUtilities.invokeLater(gamePanel::setUpMatch);
+            }
         });
     }
 }
\ No newline at end of file
@@ -0,0 +1,78 @@
+/**
+ * The GameRecord class is one recorded game (round): the match it belongs to, the moves
+ * in order as cell indices (row * cols + col, CROSS first), and the final state.
+ * Records are written by GameRecordWriter and streamed back by GameRecordReader.
+ */
+public class GameRecord {
+    private final String playerXName, playerOName;
+    private final int rows, cols, winLength, maxRounds;
+    /** 1-based number of this round within its match */
+    private final int round;
+    private final int[] moves;
+    private final State result;
+
+    public GameRecord(String playerXName, String playerOName, int rows, int cols, int winLength,
+                      int maxRounds, int round, int[] moves, State result) {
+        this.playerXName = playerXName;
+        this.playerOName = playerOName;
+        this.rows = rows;
+        this.cols = cols;
+        this.winLength = winLength;
+        this.maxRounds = maxRounds;
+        this.round = round;
+        this.moves = moves;
+        this.result = result;
+    }
+
+    /**
+     * Replay the moves on board (reset first; it must have this record's shape) and
+     * return the resulting state, which matches getResult() for a consistent record.
+     */
+    public State replay(BitBoard board) {
+        board.reset();
+        State state = State.PLAYING;
+        Seed player = Seed.CROSS;
+        for (int move : moves) {
+            state = board.play(player, move);
+            player = (player == Seed.CROSS) ? Seed.NOUGHT : Seed.CROSS;
+        }
+        return state;
+    }
+
+    public String getPlayerXName() {
+        return playerXName;
+    }
+
+    public String getPlayerOName() {
+        return playerOName;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getWinLength() {
+        return winLength;
+    }
+
+    public int getMaxRounds() {
+        return maxRounds;
+    }
+
+    public int getRound() {
+        return round;
+    }
+
+    /** The moves as cell indices; the array belongs to this record and must not be modified */
+    public int[] getMoves() {
+        return moves;
+    }
+
+    public State getResult() {
+        return result;
+    }
+}
@@ -0,0 +1,289 @@
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The GameRecordReader class streams the games of a log written by GameRecordWriter,
+ * one at a time: only the current match block is held in memory, so logs of millions
+ * of games can be replayed or exported.
+ *
+ * Each block is read whole using its length prefix and checked (board shape, every
+ * move on the board, every result a State, the games filling the block exactly) before
+ * any of its games is returned. A truncated last block (e.g. from a crash while
+ * writing) ends the iteration, and isTruncated() tells whether that happened; a block
+ * that is complete but fails the check is skipped and counted by getCorruptBlocks().
+ *
+ * Usage: GameRecordReader file [text]
+ *   prints a summary of the log (replaying every game to check it), or with "text"
+ *   every game as one tab-separated line:
+ *   playerX, playerO, rows, cols, winLength, maxRounds, round, result, comma-separated moves
+ */
+public class GameRecordReader implements Iterator<GameRecord>, Closeable {
+    private static final State[] STATES = State.values();
+    /** Largest block and board accepted; anything bigger is a corrupt length or header */
+    static final int MAX_BLOCK_BYTES = 1 << 26;
+    private static final int MAX_CELLS = 1 << 20;
+
+    private final DataInputStream in;
+
+    /** The current match block, and the read position of the next game in it */
+    private byte[] block = new byte[256];
+    private int blockLength, position;
+
+    // Header of the current match block and position within it
+    private String playerXName, playerOName;
+    private int rows, cols, winLength, maxRounds;
+    private int gamesInMatch, gamesRead;
+    private boolean truncated = false;
+    private int corruptBlocks = 0;
+    private GameRecord next;
+
+    public GameRecordReader(Path file) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+        try {
+            if (in.readInt() != GameRecordWriter.MAGIC) {
+                throw new IOException(file + " is not a game record file");
+            }
+            int version = in.readUnsignedByte();
+            if (version != GameRecordWriter.VERSION) {
+                throw new IOException("Unsupported game record version " + version);
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = readGame();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public GameRecord next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        GameRecord game = next;
+        next = null;
+        return game;
+    }
+
+    /** Return true if the log ended in the middle of a match block */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /** Return the number of complete blocks skipped because their content was invalid */
+    public int getCorruptBlocks() {
+        return corruptBlocks;
+    }
+
+    /** Read the next game, starting the next valid match block when the current one is done; null at the end */
+    private GameRecord readGame() throws IOException {
+        while (gamesRead == gamesInMatch) {
+            if (truncated || !readBlock()) {
+                return null;
+            }
+            if (!checkBlock()) {
+                corruptBlocks++;
+                gamesRead = gamesInMatch = 0;
+            }
+        }
+        int[] moves = new int[readVarint()];
+        for (int i = 0; i < moves.length; ++i) {
+            moves[i] = readVarint();
+        }
+        State result = STATES[block[position++] & 0xFF];
+        gamesRead++;
+        return new GameRecord(playerXName, playerOName, rows, cols, winLength, maxRounds,
+                gamesRead, moves, result);
+    }
+
+    /** Read the next whole block into block; false at the end of the log or at a truncated block */
+    private boolean readBlock() throws IOException {
+        int first = in.read();
+        if (first < 0) {
+            return false; // clean end of the log
+        }
+        try {
+            int length = first & 0x7F;
+            for (int shift = 7, b = first; (b & 0x80) != 0; shift += 7) {
+                b = in.readUnsignedByte();
+                if (shift > 28) {
+                    throw new IOException("Corrupt block length in game record");
+                }
+                length |= (b & 0x7F) << shift;
+            }
+            if (length <= 0 || length > MAX_BLOCK_BYTES) {
+                throw new IOException("Corrupt block length " + length + " in game record");
+            }
+            if (block.length < length) {
+                block = new byte[Math.max(length, 2 * block.length)];
+            }
+            in.readFully(block, 0, length);
+            blockLength = length;
+            return true;
+        } catch (EOFException e) {
+            truncated = true;
+            return false;
+        }
+    }
+
+    /**
+     * Decode the header of the block just read and check that its games decode to
+     * valid records that fill the block exactly; on success leave position at the
+     * first game.
+     */
+    private boolean checkBlock() {
+        position = 0;
+        rows = readVarint();
+        cols = readVarint();
+        winLength = readVarint();
+        maxRounds = readVarint();
+        if (rows <= 0 || cols <= 0 || (long) rows * cols > MAX_CELLS
+                || winLength <= 0 || winLength > Math.max(rows, cols) || maxRounds < 0) {
+            return false;
+        }
+        playerXName = readString();
+        playerOName = readString();
+        gamesInMatch = readVarint();
+        if (playerXName == null || playerOName == null || gamesInMatch < 0) {
+            return false;
+        }
+        int gamesStart = position;
+        int cells = rows * cols;
+        for (int game = 0; game < gamesInMatch; ++game) {
+            int count = readVarint();
+            if (count < 0 || count > cells) {
+                return false;
+            }
+            for (int i = 0; i < count; ++i) {
+                int move = readVarint();
+                if (move < 0 || move >= cells) {
+                    return false;
+                }
+            }
+            if (position >= blockLength || (block[position++] & 0xFF) >= STATES.length) {
+                return false;
+            }
+        }
+        if (position != blockLength) {
+            return false;
+        }
+        position = gamesStart;
+        gamesRead = 0;
+        return true;
+    }
+
+    /** Decode a varint at position in the current block; -1 if it runs past the block or overflows */
+    private int readVarint() {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (position >= blockLength) {
+                return -1;
+            }
+            int b = block[position++];
+            if (shift == 28 && (b & 0xF0) != 0) {
+                return -1; // more than 31 bits
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        return -1;
+    }
+
+    /** Decode a string at position in the current block; null if it runs past the block */
+    private String readString() {
+        int length = readVarint();
+        if (length < 0 || length > blockLength - position) {
+            return null;
+        }
+        String s = new String(block, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return s;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: GameRecordReader file [text]");
+            return;
+        }
+        boolean text = args.length > 1 && args[1].equalsIgnoreCase("text");
+        PrintStream out = System.out;
+        long start = System.nanoTime();
+        long games = 0, moves = 0, mismatches = 0;
+        long[] results = new long[STATES.length];
+        BitBoard board = null;
+        try (GameRecordReader reader = new GameRecordReader(Paths.get(args[0]))) {
+            while (reader.hasNext()) {
+                GameRecord game = reader.next();
+                games++;
+                moves += game.getMoves().length;
+                results[game.getResult().ordinal()]++;
+                if (text) {
+                    StringBuilder sb = new StringBuilder();
+                    sb.append(game.getPlayerXName()).append('\t').append(game.getPlayerOName())
+                            .append('\t').append(game.getRows()).append('\t').append(game.getCols())
+                            .append('\t').append(game.getWinLength()).append('\t').append(game.getMaxRounds())
+                            .append('\t').append(game.getRound()).append('\t').append(game.getResult()).append('\t');
+                    for (int i = 0; i < game.getMoves().length; ++i) {
+                        if (i > 0) sb.append(',');
+                        sb.append(game.getMoves()[i]);
+                    }
+                    out.println(sb);
+                    continue;
+                }
+                if (board == null || board.getRows() != game.getRows() || board.getCols() != game.getCols()
+                        || board.getWinLength() != game.getWinLength()) {
+                    board = new BitBoard(game.getRows(), game.getCols(), game.getWinLength());
+                }
+                try {
+                    if (game.replay(board) != game.getResult()) {
+                        mismatches++;
+                    }
+                } catch (IllegalStateException | ArrayIndexOutOfBoundsException e) {
+                    mismatches++; // a move on an occupied cell or off the board
+                }
+            }
+            if (reader.isTruncated()) {
+                System.err.println("Warning: the log ends with a truncated match");
+            }
+            if (reader.getCorruptBlocks() > 0) {
+                System.err.println("Warning: skipped " + reader.getCorruptBlocks() + " corrupt match blocks");
+            }
+        }
+        if (!text) {
+            double seconds = (System.nanoTime() - start) / 1e9;
+            out.printf("%d games, %d moves, read and replayed in %.2f s (%.0f games/s)%n",
+                    games, moves, seconds, games / seconds);
+            out.printf("X won %d, O won %d, draw %d, unfinished %d, replay mismatches %d%n",
+                    results[State.CROSS_WON.ordinal()], results[State.NOUGHT_WON.ordinal()],
+                    results[State.DRAW.ordinal()], results[State.PLAYING.ordinal()], mismatches);
+        }
+    }
+}
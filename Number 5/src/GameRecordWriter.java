@@ -0,0 +1,216 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The GameRecordWriter class appends played matches to a compact binary log.
+ *
+ * File layout (all integers are unsigned LEB128 varints unless noted):
+ *   header:  MAGIC (4 bytes, big-endian), VERSION (1 byte)
+ *   then one block per match:
+ *     block length in bytes
+ *     rows, cols, winLength, maxRounds
+ *     playerXName, playerOName       (length, then UTF-8 bytes)
+ *     number of games, then per game:
+ *       number of moves, each move as a cell index (row * cols + col), result State ordinal
+ * A 3x3 game takes about 11 bytes, a 15x15 one about two bytes per move. A block is
+ * written and flushed in one piece, so a crash can at worst leave a truncated last
+ * block, which GameRecordReader stops at. Opening a writer cuts such a partial block
+ * off before appending, so the blocks written after a crash stay readable.
+ *
+ * Writes are synchronized, so one writer can be shared by many sessions (e.g. every
+ * match of a MatchServer). Games are buffered per match by GameSession (see
+ * encodeGame) and appended when the match is recorded.
+ *
+ * Usage: GameRecordWriter file  (imports the text format of GameRecordReader from stdin)
+ */
+public class GameRecordWriter implements Closeable {
+    static final int MAGIC = 0x54545452; // "TTTR"
+    static final int VERSION = 1;
+
+    private final OutputStream out;
+    private final ByteArrayOutputStream block = new ByteArrayOutputStream();
+    private final byte[] lengthBytes = new byte[5];
+
+    /**
+     * Open the file for appending, creating it (with its header) if it is new or empty,
+     * and truncating a partial block left at its end by a crash.
+     */
+    public GameRecordWriter(Path file) throws IOException {
+        boolean fresh = !Files.exists(file) || Files.size(file) == 0;
+        if (!fresh) {
+            long complete = completeLength(file);
+            if (complete < Files.size(file)) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(complete);
+                }
+                fresh = complete == 0;
+            }
+        }
+        out = new BufferedOutputStream(Files.newOutputStream(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND), 1 << 16);
+        if (fresh) {
+            out.write(MAGIC >>> 24);
+            out.write(MAGIC >>> 16);
+            out.write(MAGIC >>> 8);
+            out.write(MAGIC);
+            out.write(VERSION);
+            out.flush();
+        }
+    }
+
+    /**
+     * Append one match block holding the given number of games, already encoded into
+     * games with encodeGame, and flush it.
+     */
+    public synchronized void writeMatch(int rows, int cols, int winLength, int maxRounds,
+                                        String playerXName, String playerOName,
+                                        int gameCount, ByteArrayOutputStream games) throws IOException {
+        block.reset();
+        writeVarint(block, rows);
+        writeVarint(block, cols);
+        writeVarint(block, winLength);
+        writeVarint(block, maxRounds);
+        writeString(block, playerXName);
+        writeString(block, playerOName);
+        writeVarint(block, gameCount);
+        games.writeTo(block);
+
+        int n = 0;
+        int length = block.size();
+        while ((length & ~0x7F) != 0) {
+            lengthBytes[n++] = (byte) ((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        lengthBytes[n++] = (byte) length;
+        out.write(lengthBytes, 0, n);
+        block.writeTo(out);
+        out.flush();
+    }
+
+    /**
+     * Return the length of the header and the complete blocks at the start of file: the
+     * file size, unless it ends with a partial block (or a partial header, giving 0).
+     */
+    static long completeLength(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            long complete;
+            try {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException(file + " is not a game record file");
+                }
+                in.readUnsignedByte();
+                complete = 5;
+            } catch (EOFException e) {
+                return 0;
+            }
+            try {
+                while (true) {
+                    int first = in.read();
+                    if (first < 0) {
+                        return complete;
+                    }
+                    long length = first & 0x7F;
+                    int prefix = 1;
+                    for (int b = first; (b & 0x80) != 0; ++prefix) {
+                        b = in.readUnsignedByte();
+                        length |= (long) (b & 0x7F) << (7 * prefix);
+                    }
+                    in.skipNBytes(length);
+                    complete += prefix + length;
+                }
+            } catch (EOFException e) {
+                return complete;
+            }
+        }
+    }
+
+    /** Append one game (moves[0 .. count) and its result) to a match's game buffer */
+    static void encodeGame(ByteArrayOutputStream games, int[] moves, int count, State result) {
+        writeVarint(games, count);
+        for (int i = 0; i < count; ++i) {
+            writeVarint(games, moves[i]);
+        }
+        games.write(result.ordinal());
+    }
+
+    static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    /** Import games from the text format printed by GameRecordReader (one game per line) */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: GameRecordWriter file < games.txt");
+            return;
+        }
+        long matches = 0, games = 0;
+        try (GameRecordWriter writer = new GameRecordWriter(Paths.get(args[0]));
+             BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            String[] header = null;
+            int count = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                // playerX, playerO, rows, cols, winLength, maxRounds, round, result, moves
+                String[] fields = line.split("\t", -1);
+                if (header != null && Integer.parseInt(fields[6]) == 1) {
+                    writer.writeMatch(header, count, buffer);
+                    matches++;
+                    buffer.reset();
+                    count = 0;
+                }
+                header = fields;
+                String[] cells = fields[8].isEmpty() ? new String[0] : fields[8].split(",");
+                int[] moves = new int[cells.length];
+                for (int i = 0; i < cells.length; ++i) {
+                    moves[i] = Integer.parseInt(cells[i]);
+                }
+                encodeGame(buffer, moves, moves.length, State.valueOf(fields[7]));
+                count++;
+                games++;
+            }
+            if (header != null) {
+                writer.writeMatch(header, count, buffer);
+                matches++;
+            }
+        }
+        System.out.println("Imported " + games + " games in " + matches + " matches");
+    }
+
+    private void writeMatch(String[] header, int count, ByteArrayOutputStream games) throws IOException {
+        writeMatch(Integer.parseInt(header[2]), Integer.parseInt(header[3]), Integer.parseInt(header[4]),
+                Integer.parseInt(header[5]), header[0], header[1], count, games);
+    }
+}
@@ -0,0 +1,265 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The GameSession class holds one match, independent of any UI: its board engine,
+ * the players, whose turn it is, the state of the current round, and the round and
+ * score counters. Any number of sessions can run side by side in one JVM.
+ *
+ * A session is not thread-safe; each one must be driven by one thread at a time.
+ *
+ * While a round is in progress its moves can be undone and redone, one at a time.
+ *
+ * With a recorder set, every finished round is kept (compactly encoded) until
+ * recordMatch() appends the match to the recorder's log.
+ *
+ * Everything that happens is published on getEvents(), so the UI, sound, statistics
+ * and network layers each subscribe on their own instead of being called from here.
+ * Every move is counted in Metrics; one move in MOVE_TIME_SAMPLE is also timed, including
+ * the listeners' work, which keeps the clock reads off most moves of a fast game.
+ */
+public class GameSession {
+    private static final LongAdder MOVES = Metrics.counter(Metrics.MOVES);
+    private static final LatencyHistogram MOVE_TIME = Metrics.timer(Metrics.MOVE_TIME);
+    /** Time one move in this many */
+    static final int MOVE_TIME_SAMPLE = 64;
+
+    private final BitBoard board;
+    private final String playerXName;
+    private String playerOName;
+
+    private int maxRounds;
+    private int roundsPlayed = 0;
+    private int scoreX = 0;
+    private int scoreO = 0;
+    private int drawScore = 0;
+
+    private State currentState = State.PLAYING;
+    private Seed currentPlayer = Seed.CROSS;
+
+    /** Moves of the current round in order, as cell indices; moves[moveCount .. redoCount) were undone and can be redone */
+    private final int[] moves;
+    private int moveCount = 0;
+    private int redoCount = 0;
+    /** Moves left before the next timed one */
+    private int movesUntilTimed = 1;
+
+    private GameRecordWriter recorder;
+    private final GameEventBus events = new GameEventBus();
+    /** Finished rounds not yet written to the recorder */
+    private final ByteArrayOutputStream recordedGames = new ByteArrayOutputStream();
+    private int recordedGameCount = 0;
+
+    /** Constructor for a match of maxRounds rounds on a rows x cols board with K = winLength */
+    public GameSession(int rows, int cols, int winLength, int maxRounds, String playerXName, String playerOName) {
+        this(new BitBoard(rows, cols, winLength), maxRounds, playerXName, playerOName);
+    }
+
+    /** Constructor for a new match on an existing board engine (e.g. on restart), which is cleared */
+    public GameSession(BitBoard board, int maxRounds, String playerXName, String playerOName) {
+        this.board = board;
+        board.reset();
+        this.moves = new int[board.getSize()];
+        this.maxRounds = Math.max(1, maxRounds);
+        this.playerXName = playerXName;
+        this.playerOName = playerOName;
+    }
+
+    /**
+     * Place the current player's seed at (row, col) and return the new state of the round.
+     * A finished round counts towards the match and updates the score; otherwise the
+     * turn passes to the other player.
+     */
+    public State play(int row, int col) {
+        if (currentState != State.PLAYING) {
+            throw new IllegalStateException("The round is over");
+        }
+        if (row < 0 || row >= board.getRows() || col < 0 || col >= board.getCols()) {
+            throw new IllegalArgumentException("Cell (" + row + "," + col + ") is off the board");
+        }
+        if (!board.isEmpty(row, col)) {
+            throw new IllegalStateException("Cell (" + row + "," + col + ") is already occupied");
+        }
+        boolean timed = --movesUntilTimed == 0;
+        long start = timed ? System.nanoTime() : 0;
+        Seed player = currentPlayer;
+        State state = board.play(player, row, col);
+        currentState = state;
+        moves[moveCount++] = row * board.getCols() + col;
+        redoCount = moveCount; // a new move discards the undone ones
+        if (state == State.PLAYING) {
+            currentPlayer = (player == Seed.CROSS) ? Seed.NOUGHT : Seed.CROSS;
+            events.movePlayed(this, player, row, col, state);
+        } else {
+            roundsPlayed++;
+            updateScore();
+            if (recorder != null) {
+                GameRecordWriter.encodeGame(recordedGames, moves, moveCount, state);
+                recordedGameCount++;
+            }
+            boolean matchOver = isMatchOver();
+            events.movePlayed(this, player, row, col, state);
+            events.scoreChanged(this, scoreX, scoreO, drawScore);
+            events.roundEnded(this, state);
+            if (matchOver) {
+                events.matchEnded(this);
+            }
+        }
+        MOVES.increment();
+        if (timed) {
+            movesUntilTimed = MOVE_TIME_SAMPLE;
+            MOVE_TIME.record(System.nanoTime() - start);
+        }
+        return state;
+    }
+
+    /**
+     * Take back the last move of the current round, handing the turn back to the player
+     * who made it. Only possible while the round is being played: a finished round has
+     * already been scored.
+     */
+    public void undo() {
+        if (!canUndo()) {
+            throw new IllegalStateException((currentState != State.PLAYING) ? "The round is over" : "No move to undo");
+        }
+        int move = moves[--moveCount];
+        board.undo();
+        currentPlayer = (currentPlayer == Seed.CROSS) ? Seed.NOUGHT : Seed.CROSS;
+        events.moveUndone(this, currentPlayer, move / board.getCols(), move % board.getCols());
+    }
+
+    /** Play the last undone move again, exactly as play() would */
+    public State redo() {
+        if (!canRedo()) {
+            throw new IllegalStateException("No move to redo");
+        }
+        int move = moves[moveCount];
+        int undone = redoCount;
+        State state = play(move / board.getCols(), move % board.getCols());
+        redoCount = undone;
+        return state;
+    }
+
+    public boolean canUndo() {
+        return currentState == State.PLAYING && moveCount > 0;
+    }
+
+    public boolean canRedo() {
+        return currentState == State.PLAYING && moveCount < redoCount;
+    }
+
+    private void updateScore() {
+        if (currentState == State.CROSS_WON) {
+            scoreX++;
+        } else if (currentState == State.NOUGHT_WON) {
+            scoreO++;
+        } else {
+            drawScore++;
+        }
+    }
+
+    /** Clear the board for the next round; CROSS always opens */
+    public void newRound() {
+        board.reset();
+        moveCount = 0;
+        redoCount = 0;
+        currentPlayer = Seed.CROSS;
+        currentState = State.PLAYING;
+        events.roundStarted(this);
+    }
+
+    /** Record the finished rounds of this match to recorder, from now on */
+    public void setRecorder(GameRecordWriter recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Append the rounds finished so far to the recorder as one match, e.g. when the
+     * match is over or abandoned. Does nothing without a recorder or finished rounds.
+     */
+    public void recordMatch() throws IOException {
+        if (recorder == null || recordedGameCount == 0) {
+            return;
+        }
+        recorder.writeMatch(board.getRows(), board.getCols(), board.getWinLength(), maxRounds,
+                playerXName, playerOName, recordedGameCount, recordedGames);
+        recordedGames.reset();
+        recordedGameCount = 0;
+    }
+
+    /** Return true once the current round is over */
+    public boolean isRoundOver() {
+        return currentState != State.PLAYING;
+    }
+
+    /** Return true once the last round of the match is over */
+    public boolean isMatchOver() {
+        return isRoundOver() && roundsPlayed >= maxRounds;
+    }
+
+    /** Extend the match by one round, e.g. to break a tie */
+    public void addTiebreakRound() {
+        maxRounds++;
+    }
+
+    /** The events of this session; subscribe a GameListener to follow it */
+    public GameEventBus getEvents() {
+        return events;
+    }
+
+    public BitBoard getBoard() {
+        return board;
+    }
+
+    /** Number of moves played in the current round */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /** Return the i-th move of the current round as a cell index, for 0 <= i < getMoveCount() */
+    public int getMove(int i) {
+        return moves[i];
+    }
+
+    public State getCurrentState() {
+        return currentState;
+    }
+
+    public Seed getCurrentPlayer() {
+        return currentPlayer;
+    }
+
+    public String getPlayerXName() {
+        return playerXName;
+    }
+
+    public String getPlayerOName() {
+        return playerOName;
+    }
+
+    /** Name the O player, for one who joins after the session was created */
+    public void setPlayerOName(String playerOName) {
+        this.playerOName = playerOName;
+    }
+
+    public int getMaxRounds() {
+        return maxRounds;
+    }
+
+    public int getRoundsPlayed() {
+        return roundsPlayed;
+    }
+
+    public int getScoreX() {
+        return scoreX;
+    }
+
+    public int getScoreO() {
+        return scoreO;
+    }
+
+    public int getDrawScore() {
+        return drawScore;
+    }
+}
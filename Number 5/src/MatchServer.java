@@ -0,0 +1,529 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The MatchServer class hosts many independent matches in one headless JVM. Every
+ * client connection is served by its own virtual thread and every match by its own
+ * GameSession, so thousands of matches fit in one process.
+ *
+ * Nothing that can block is done inside a synchronized block, which would pin the
+ * virtual thread to its carrier: locks are ReentrantLocks, a computer move waits for a
+ * pooled AI before taking the match lock, and messages are queued under the match lock
+ * but written to the sockets after it is released.
+ *
+ * The protocol is line-based text over a local TCP socket. Client commands:
+ *   NAME name                          set the player name used for matches started or joined
+ *   NEW size winLength rounds level    play X against the computer (Easy, Medium, Hard, Perfect, MCTS)
+ *   HOST size winLength rounds         open a two-player match and play X
+ *   JOIN id                            join an open match and play O
+ *   MOVE row col                       place a seed
+ *   BOARD                              print the board, one line per row
+ *   TOP [n]                            print the n best players (default 10), one per line
+ *   QUIT                               close the connection
+ * Server messages:
+ *   MATCH id X|O, TURN X|O, MOVED X|O row col, ROUND state scoreX scoreO,
+ *   OVER scoreX scoreO, OK, ERROR message,
+ *   PLAYER rank name wins losses draws (one per player, then OK, for TOP)
+ *
+ * Usage: MatchServer [port] [recordFile] [statsFile] [spectatorPort]  (with a record file,
+ * every match is appended to it when it ends, see GameRecordReader; with a stats file, the
+ * players' statistics are kept in it, see StatsStore; with a spectator port, every match
+ * is streamed to viewers there, see SpectatorServer). -Dtictactoe.metrics=file writes a
+ * periodic snapshot of the server's Metrics.
+ */
+public class MatchServer {
+    public static final int DEFAULT_PORT = 5555;
+    /** Time the computer may think per move */
+    public static final long AI_MOVE_TIME_MS = 200;
+    /** Most AI players kept per difficulty; matches borrow one for each computer move */
+    private static final int AI_POOL_SIZE = Runtime.getRuntime().availableProcessors();
+
+    private final int port;
+    /** Log every finished match is appended to, or null */
+    private final GameRecordWriter recorder;
+    /** Player statistics, or null */
+    private final StatsStore stats;
+    /** Feed every match is streamed to, or null */
+    private final SpectatorServer spectators;
+    private final Map<Difficulty, BlockingQueue<AIPlayer>> aiPools = new EnumMap<>(Difficulty.class);
+    private final Map<Difficulty, AtomicInteger> aiCreated = new EnumMap<>(Difficulty.class);
+    private final Map<Integer, ServerMatch> openMatches = new ConcurrentHashMap<>();
+    private final AtomicInteger nextMatchId = new AtomicInteger(1);
+    private final AtomicInteger activeMatches = new AtomicInteger();
+    private volatile ServerSocket serverSocket;
+
+    public MatchServer(int port) {
+        this(port, null, null);
+    }
+
+    /** Constructor for a server appending every match to recorder and counting games in stats (either may be null) */
+    public MatchServer(int port, GameRecordWriter recorder, StatsStore stats) {
+        this(port, recorder, stats, null);
+    }
+
+    /** Constructor as above, also streaming every match to spectators (may be null) */
+    public MatchServer(int port, GameRecordWriter recorder, StatsStore stats, SpectatorServer spectators) {
+        this.port = port;
+        this.recorder = recorder;
+        this.stats = stats;
+        this.spectators = spectators;
+        for (Difficulty difficulty : Difficulty.values()) {
+            aiPools.put(difficulty, new ArrayBlockingQueue<>(AI_POOL_SIZE));
+            aiCreated.put(difficulty, new AtomicInteger());
+        }
+    }
+
+    /** Accept connections until stop() is called, serving each on a virtual thread */
+    public void serve() throws IOException {
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try (ServerSocket server = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress())) {
+            serverSocket = server;
+            System.out.println("Match server listening on " + server.getLocalSocketAddress());
+            while (!server.isClosed()) {
+                try {
+                    executor.submit(new Connection(server.accept()));
+                } catch (SocketException e) {
+                    break; // closed by stop()
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void stop() throws IOException {
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+    }
+
+    /**
+     * Take an idle AI from the pool, creating one while the pool is below its size, or
+     * wait for one to be returned. The AIs are single-threaded: the server already runs
+     * one search per core.
+     */
+    private AIPlayer borrowAI(Difficulty difficulty) throws InterruptedException {
+        BlockingQueue<AIPlayer> pool = aiPools.get(difficulty);
+        AIPlayer ai = pool.poll();
+        if (ai != null) {
+            return ai;
+        }
+        AtomicInteger created = aiCreated.get(difficulty);
+        if (created.incrementAndGet() <= AI_POOL_SIZE) {
+            return difficulty.createPlayer(1);
+        }
+        created.decrementAndGet();
+        return pool.take();
+    }
+
+    private void returnAI(Difficulty difficulty, AIPlayer ai) {
+        aiPools.get(difficulty).offer(ai);
+    }
+
+    /** Number of matches currently in progress */
+    public int getActiveMatches() {
+        return activeMatches.get();
+    }
+
+    /** A message for one connection, queued under the match lock */
+    private record Outgoing(Connection to, String message) {
+    }
+
+    /**
+     * A match between one or two connections; all moves are applied under its lock.
+     * It follows its session's events to tell the players what happened, queueing the
+     * messages while the lock is held and sending them, in order, once it is released.
+     */
+    private final class ServerMatch implements GameListener {
+        final ReentrantLock lock = new ReentrantLock();
+        /** Messages not yet sent; drained in order by whoever holds sendLock */
+        private final ConcurrentLinkedQueue<Outgoing> outbox = new ConcurrentLinkedQueue<>();
+        private final ReentrantLock sendLock = new ReentrantLock();
+        final int id;
+        final GameSession session;
+        /** Level of the computer playing O, or null for two human players */
+        final Difficulty difficulty;
+        final Connection crossPlayer;
+        Connection noughtPlayer;
+        boolean finished = false;
+
+        ServerMatch(int id, GameSession session, Difficulty difficulty, Connection crossPlayer) {
+            this.id = id;
+            this.session = session;
+            this.difficulty = difficulty;
+            this.crossPlayer = crossPlayer;
+            session.getEvents().subscribe(this);
+            activeMatches.incrementAndGet();
+        }
+
+        void move(Connection from, int row, int col) throws InterruptedException {
+            Seed seed = (from == crossPlayer) ? Seed.CROSS : Seed.NOUGHT;
+            lock.lock();
+            try {
+                if (finished) {
+                    queue(from, "ERROR The match is over");
+                } else if (difficulty == null && noughtPlayer == null) {
+                    queue(from, "ERROR Waiting for an opponent");
+                } else if (session.getCurrentPlayer() != seed) {
+                    queue(from, "ERROR Not your turn");
+                } else {
+                    try {
+                        apply(row, col);
+                    } catch (IllegalArgumentException | IllegalStateException e) {
+                        queue(from, "ERROR " + e.getMessage());
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+            flush();
+            while (isComputerTurn() && computerMove()) {
+                flush();
+            }
+        }
+
+        private boolean isComputerTurn() {
+            lock.lock();
+            try {
+                return difficulty != null && !finished && session.getCurrentPlayer() == Seed.NOUGHT;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /** Borrow an AI (waiting without the lock), then play its move; false if the turn passed meanwhile */
+        private boolean computerMove() throws InterruptedException {
+            AIPlayer ai = borrowAI(difficulty);
+            try {
+                lock.lock();
+                try {
+                    if (finished || session.getCurrentPlayer() != Seed.NOUGHT) {
+                        return false;
+                    }
+                    int move = ai.selectMove(session.getBoard(), Seed.NOUGHT,
+                            System.nanoTime() + AI_MOVE_TIME_MS * 1_000_000L);
+                    int cols = session.getBoard().getCols();
+                    apply(move / cols, move % cols);
+                    return true;
+                } finally {
+                    lock.unlock();
+                }
+            } finally {
+                returnAI(difficulty, ai);
+            }
+        }
+
+        /** Play the current player's move, then start the next round if this one is over */
+        private void apply(int row, int col) {
+            State state = session.play(row, col);
+            if (finished) {
+                return;
+            }
+            if (state != State.PLAYING) {
+                session.newRound();
+            }
+            broadcast("TURN " + session.getCurrentPlayer().getDisplayName());
+        }
+
+        @Override
+        public void movePlayed(GameSession session, Seed player, int row, int col, State state) {
+            broadcast("MOVED " + player.getDisplayName() + " " + row + " " + col);
+        }
+
+        @Override
+        public void roundEnded(GameSession session, State result) {
+            broadcast("ROUND " + result + " " + session.getScoreX() + " " + session.getScoreO());
+        }
+
+        @Override
+        public void matchEnded(GameSession session) {
+            broadcast("OVER " + session.getScoreX() + " " + session.getScoreO());
+            finish();
+        }
+
+        void leave(Connection who) {
+            lock.lock();
+            try {
+                if (!finished) {
+                    Connection other = (who == crossPlayer) ? noughtPlayer : crossPlayer;
+                    if (other != null) {
+                        queue(other, "ERROR Opponent left");
+                    }
+                    finish();
+                }
+            } finally {
+                lock.unlock();
+            }
+            flush();
+        }
+
+        private void finish() {
+            finished = true;
+            try {
+                session.recordMatch();
+            } catch (IOException e) {
+                System.err.println("Couldn't record match " + id + ": " + e.getMessage());
+            }
+            if (spectators != null) {
+                spectators.unwatch(session);
+            }
+            openMatches.remove(id);
+            activeMatches.decrementAndGet();
+            crossPlayer.match = null;
+            if (noughtPlayer != null) {
+                noughtPlayer.match = null;
+            }
+        }
+
+        /** Queue message for both players; call with the lock held, then flush() after releasing it */
+        private void broadcast(String message) {
+            queue(crossPlayer, message);
+            if (noughtPlayer != null) {
+                queue(noughtPlayer, message);
+            }
+        }
+
+        private void queue(Connection to, String message) {
+            outbox.add(new Outgoing(to, message));
+        }
+
+        /** Send the queued messages in order; call without the lock */
+        void flush() {
+            sendLock.lock();
+            try {
+                Outgoing next;
+                while ((next = outbox.poll()) != null) {
+                    next.to().send(next.message());
+                }
+            } finally {
+                sendLock.unlock();
+            }
+        }
+
+        String boardText() {
+            lock.lock();
+            try {
+                BitBoard board = session.getBoard();
+                StringBuilder sb = new StringBuilder();
+                for (int row = 0; row < board.getRows(); ++row) {
+                    if (row > 0) sb.append('\n');
+                    for (int col = 0; col < board.getCols(); ++col) {
+                        Seed seed = board.get(row, col);
+                        sb.append(seed == Seed.NO_SEED ? '.' : seed.getDisplayName().charAt(0));
+                    }
+                }
+                return sb.toString();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /** One client connection, served on its own virtual thread */
+    private final class Connection implements Runnable {
+        private final Socket socket;
+        private PrintWriter out;
+        /** Serializes writes to the socket (a ReentrantLock, so a slow client does not pin a carrier) */
+        private final ReentrantLock sendLock = new ReentrantLock();
+        private String name = "Player";
+        volatile ServerMatch match;
+
+        Connection(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public void run() {
+            try (Socket s = socket;
+                 BufferedReader in = new BufferedReader(
+                         new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8))) {
+                out = new PrintWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8), true);
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (!handle(line.trim().split("\\s+"))) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                // the client went away
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                ServerMatch current = match;
+                if (current != null) {
+                    current.leave(this);
+                }
+            }
+        }
+
+        /** Handle one command; return false to close the connection */
+        private boolean handle(String[] words) throws InterruptedException {
+            String command = words[0].toUpperCase();
+            try {
+                switch (command) {
+                    case "NAME":
+                        if (words.length > 1) name = words[1];
+                        send("OK");
+                        break;
+                    case "NEW":
+                        startMatch(words, parseDifficulty(words[4]));
+                        break;
+                    case "HOST":
+                        startMatch(words, null);
+                        break;
+                    case "JOIN":
+                        join(Integer.parseInt(words[1]));
+                        break;
+                    case "MOVE":
+                        ServerMatch current = match;
+                        if (current == null) {
+                            send("ERROR No match in progress");
+                        } else {
+                            current.move(this, Integer.parseInt(words[1]), Integer.parseInt(words[2]));
+                        }
+                        break;
+                    case "BOARD":
+                        ServerMatch shown = match;
+                        send(shown == null ? "ERROR No match in progress" : shown.boardText());
+                        break;
+                    case "TOP":
+                        int limit = (words.length > 1) ? Integer.parseInt(words[1]) : 10;
+                        if (stats != null) {
+                            int rank = 1;
+                            for (StatsStore.PlayerStats p : stats.getLeaderboard(limit)) {
+                                send("PLAYER " + rank++ + " " + p.getName() + " " + p.getWins() + " "
+                                        + p.getLosses() + " " + p.getDraws());
+                            }
+                        }
+                        send("OK");
+                        break;
+                    case "QUIT":
+                        return false;
+                    default:
+                        send("ERROR Unknown command " + words[0]);
+                }
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                send("ERROR Bad arguments for " + command);
+            } catch (IllegalArgumentException e) {
+                send("ERROR " + e.getMessage());
+            }
+            return true;
+        }
+
+        private void startMatch(String[] words, Difficulty difficulty) {
+            if (match != null) {
+                send("ERROR Already in a match");
+                return;
+            }
+            int size = Integer.parseInt(words[1]);
+            int winLength = Integer.parseInt(words[2]);
+            int rounds = Integer.parseInt(words[3]);
+            if (size < Board.MIN_SIZE || size > Board.MAX_SIZE || winLength < Board.MIN_SIZE || winLength > size) {
+                throw new IllegalArgumentException("Unsupported board " + size + "x" + size + " with win length " + winLength);
+            }
+            String opponent = (difficulty == null) ? "Player O" : "Computer";
+            GameSession session = new GameSession(size, size, winLength, rounds, name, opponent);
+            session.setRecorder(recorder);
+            if (stats != null) {
+                session.getEvents().subscribe(stats);
+            }
+            if (spectators != null && difficulty != null) {
+                spectators.watch(session); // a hosted match is streamed once its opponent joins
+            }
+            ServerMatch created = new ServerMatch(nextMatchId.getAndIncrement(), session, difficulty, this);
+            match = created;
+            send("MATCH " + created.id + " " + Seed.CROSS.getDisplayName());
+            if (difficulty == null) {
+                openMatches.put(created.id, created);
+            } else {
+                send("TURN " + Seed.CROSS.getDisplayName());
+            }
+        }
+
+        private void join(int id) {
+            if (match != null) {
+                send("ERROR Already in a match");
+                return;
+            }
+            ServerMatch open = openMatches.remove(id);
+            if (open == null) {
+                send("ERROR No open match " + id);
+                return;
+            }
+            open.lock.lock();
+            try {
+                if (open.finished) {
+                    open.queue(this, "ERROR No open match " + id);
+                } else {
+                    open.noughtPlayer = this;
+                    open.session.setPlayerOName(name);
+                    if (spectators != null) {
+                        spectators.watch(open.session);
+                    }
+                    match = open;
+                    open.queue(this, "MATCH " + open.id + " " + Seed.NOUGHT.getDisplayName());
+                    open.broadcast("TURN " + open.session.getCurrentPlayer().getDisplayName());
+                }
+            } finally {
+                open.lock.unlock();
+            }
+            open.flush();
+        }
+
+        void send(String message) {
+            sendLock.lock();
+            try {
+                out.println(message);
+            } finally {
+                sendLock.unlock();
+            }
+        }
+    }
+
+    private static Difficulty parseDifficulty(String name) {
+        for (Difficulty difficulty : Difficulty.values()) {
+            if (difficulty.getDisplayName().equalsIgnoreCase(name)) {
+                return difficulty;
+            }
+        }
+        throw new IllegalArgumentException("Unknown level " + name);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        GameRecordWriter recorder = (args.length > 1) ? new GameRecordWriter(Paths.get(args[1])) : null;
+        StatsStore stats = (args.length > 2) ? new StatsStore(Paths.get(args[2])) : null;
+        SpectatorServer spectators = (args.length > 3) ? new SpectatorServer(Integer.parseInt(args[3])) : null;
+        Metrics.startReporter();
+        // Load the tablebases now, so the first computer move on a 3x3 or 4x4 board doesn't wait for them
+        PerfectPlayTable.getInstance();
+        PerfectPlayTable4x4.forWinLength(3);
+        PerfectPlayTable4x4.forWinLength(4);
+        try {
+            new MatchServer(port, recorder, stats, spectators).serve();
+        } finally {
+            if (stats != null) {
+                stats.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,469 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * The MctsAI class plays by Monte Carlo Tree Search ("MCTS" difficulty), for boards too
+ * large for the alpha-beta search to see far enough.
+ *
+ * - Each iteration descends the tree by UCT (mean result plus an exploration bonus),
+ *   expands a leaf once it has been visited, plays the game out with uniformly random
+ *   moves, and adds the result to every node on the path.
+ * - The tree lives in parallel int arrays (no object per node), and moves are played
+ *   on a BitBoard in place and taken back through its move stack; a random playout move is an O(1) pick from
+ *   the board's empty-cell list.
+ * - With more than one thread, every thread grows its own tree from the same position
+ *   (root parallelism); their root visit counts are summed to choose the move.
+ * - The subtree under the position reached after our move and the opponent's reply is
+ *   kept for the next move (tree reuse), instead of starting from scratch.
+ * - A move that wins at once is played, and an immediate threat is blocked, before any
+ *   search, as random playouts are slow to notice either.
+ *
+ * A search stops at the caller's deadline or after maxPlayouts playouts (shared among
+ * the threads), whichever comes first. getPlayoutsPerSecond() reports the speed of the
+ * last search.
+ */
+public class MctsAI implements AIPlayer {
+    /** Default budget of playouts per move */
+    public static final long DEFAULT_MAX_PLAYOUTS = 200_000;
+    /** Default tree size per thread: 2^18 nodes (5 MB) */
+    public static final int DEFAULT_NODE_CAPACITY = 1 << 18;
+    /** Weight of the UCT exploration bonus; results are scaled to [0, 1] */
+    private static final double EXPLORATION = 1.0;
+    /** A leaf is expanded once it has been visited this many times */
+    private static final int EXPAND_VISITS = 1;
+    /** Check the clock once every 64 playouts */
+    private static final int CLOCK_CHECK_MASK = 63;
+    /** Boards with more cells only expand moves within 2 cells of a placed seed */
+    private static final int FULL_WIDTH_MAX_CELLS = 25;
+    private static final int NEIGHBOUR_RADIUS = 2;
+    /** Draws per playout move looking for a cell next to a seed (large boards only) */
+    private static final int PLAYOUT_TRIES = 4;
+    private static final int NO_NODE = -1;
+
+    /** Worker threads shared by every MctsAI for its helper trees */
+    private static final ForkJoinPool SEARCH_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    private final int threads;
+    private final long maxPlayouts;
+    private final int nodeCapacity;
+
+    // Shape the trees were built for, and the position and answer of the last search
+    private int rows = -1, cols = -1, winLength = -1;
+    private Tree[] trees;
+    private ForkJoinTask<?>[] helperTasks;
+    private BitBoard rootPosition;
+    private int lastMove = -1;
+
+    // Statistics of the last search
+    private long playouts;
+    /** Set when the search is cancelled (its caller's thread interrupted), to stop the helpers too */
+    private volatile boolean stopped;
+    private long elapsedNanos;
+
+    /** Constructor for a single-threaded player with the default budget */
+    public MctsAI() {
+        this(1, DEFAULT_MAX_PLAYOUTS, DEFAULT_NODE_CAPACITY);
+    }
+
+    /** Constructor for a player growing one tree on each of threads threads */
+    public MctsAI(int threads, long maxPlayouts, int nodeCapacity) {
+        this.threads = Math.max(1, threads);
+        this.maxPlayouts = Math.max(1, maxPlayouts);
+        this.nodeCapacity = Math.max(2, nodeCapacity);
+    }
+
+    @Override
+    public synchronized int selectMove(BitBoard position, Seed player, long deadline) {
+        long start = System.nanoTime();
+        prepare(position);
+        Tree first = trees[0];
+        first.board.copyFrom(position);
+        int tactical = first.tacticalMove(player);
+        if (tactical >= 0) {
+            playouts = 0;
+            elapsedNanos = System.nanoTime() - start;
+            forgetTree();
+            return tactical;
+        }
+
+        int opponentMove = replyTo(position, player);
+        for (Tree tree : trees) {
+            tree.board.copyFrom(position);
+            if (opponentMove < 0 || !tree.advance(lastMove, opponentMove)) {
+                tree.reset();
+            }
+        }
+
+        long budget = Math.max(1, maxPlayouts / threads);
+        stopped = false;
+        for (int i = 1; i < threads; ++i) {
+            Tree helper = trees[i];
+            helperTasks[i - 1] = SEARCH_POOL.submit(() -> helper.search(player, budget, deadline));
+        }
+        first.search(player, budget, deadline);
+        playouts = first.playouts;
+        for (int i = 1; i < threads; ++i) {
+            helperTasks[i - 1].join();
+            helperTasks[i - 1] = null;
+            playouts += trees[i].playouts;
+        }
+
+        int move = mostVisited();
+        if (move < 0) {
+            move = position.getEmptyCell(0); // no iteration ran before the deadline
+        }
+        rootPosition.copyFrom(position);
+        lastMove = move;
+        elapsedNanos = System.nanoTime() - start;
+        return move;
+    }
+
+    /** Number of playouts (by all threads) in the last search */
+    public long getPlayouts() {
+        return playouts;
+    }
+
+    /** Playouts per second in the last search, over all threads */
+    public double getPlayoutsPerSecond() {
+        return (elapsedNanos == 0) ? 0 : playouts * 1e9 / elapsedNanos;
+    }
+
+    /** Build the trees for this board shape, unless they already fit it */
+    private void prepare(BitBoard position) {
+        if (trees != null && position.getRows() == rows && position.getCols() == cols
+                && position.getWinLength() == winLength) {
+            return;
+        }
+        rows = position.getRows();
+        cols = position.getCols();
+        winLength = position.getWinLength();
+        trees = new Tree[threads];
+        for (int i = 0; i < threads; ++i) {
+            trees[i] = new Tree(position, 0x9E3779B97F4A7C15L * (i + 1));
+        }
+        helperTasks = new ForkJoinTask<?>[threads - 1];
+        rootPosition = position.copy();
+        forgetTree();
+    }
+
+    private void forgetTree() {
+        lastMove = -1;
+    }
+
+    /**
+     * If position is the last searched position plus our move lastMove and one reply,
+     * return the reply (so the trees can be reused), else -1.
+     */
+    private int replyTo(BitBoard position, Seed player) {
+        if (lastMove < 0 || position.getOccupied() != rootPosition.getOccupied() + 2
+                || position.get(lastMove) != player) {
+            return -1;
+        }
+        int reply = -1;
+        for (int index = 0; index < position.getSize(); ++index) {
+            Seed before = rootPosition.get(index);
+            Seed now = position.get(index);
+            if (before != now) {
+                if (before != Seed.NO_SEED) {
+                    return -1;
+                }
+                if (index != lastMove) {
+                    reply = index;
+                }
+            }
+        }
+        return (reply >= 0 && position.get(reply) == opposite(player)) ? reply : -1;
+    }
+
+    /** The root move with the most visits over all trees */
+    private int mostVisited() {
+        long[] visits = trees[0].rootVisits;
+        Arrays.fill(visits, 0);
+        for (Tree tree : trees) {
+            int root = tree.root;
+            if (tree.childCount[root] <= 0) {
+                continue;
+            }
+            for (int c = tree.firstChild[root]; c < tree.firstChild[root] + tree.childCount[root]; ++c) {
+                visits[tree.move[c]] += tree.visits[c];
+            }
+        }
+        int best = -1;
+        for (int index = 0; index < visits.length; ++index) {
+            if (visits[index] > 0 && (best < 0 || visits[index] > visits[best])) {
+                best = index;
+            }
+        }
+        return best;
+    }
+
+    private static Seed opposite(Seed player) {
+        return (player == Seed.CROSS) ? Seed.NOUGHT : Seed.CROSS;
+    }
+
+    /**
+     * One search tree with its own board copy and random generator. Node n holds the
+     * move leading to it, its children (a contiguous range, or -1 if not expanded), its
+     * visit count, and its result in half-points (win 2, draw 1) for the player who made
+     * the move.
+     */
+    private final class Tree {
+        final BitBoard board;
+        final int[] move, firstChild, childCount, visits, score;
+        int size, root;
+        long playouts;
+        private long seed;
+
+        // Scratch buffers for one iteration
+        private final int[] path, candidates, stamp;
+        private int stampGeneration;
+        final long[] rootVisits;
+
+        Tree(BitBoard shape, long seed) {
+            this.board = shape.copy();
+            this.seed = seed;
+            move = new int[nodeCapacity];
+            firstChild = new int[nodeCapacity];
+            childCount = new int[nodeCapacity];
+            visits = new int[nodeCapacity];
+            score = new int[nodeCapacity];
+            int cells = shape.getSize();
+            path = new int[cells + 1];
+            candidates = new int[cells];
+            stamp = new int[cells];
+            rootVisits = new long[cells];
+            reset();
+        }
+
+        void reset() {
+            size = 1;
+            root = 0;
+            move[0] = -1;
+            childCount[0] = -1;
+            visits[0] = 0;
+            score[0] = 0;
+        }
+
+        /** Move the root down past our move and the reply; false if that node is not in the tree */
+        boolean advance(int ours, int reply) {
+            if (size > nodeCapacity - nodeCapacity / 4) {
+                return false; // nearly full; a fresh tree has room to grow
+            }
+            int node = child(root, ours);
+            node = (node == NO_NODE) ? NO_NODE : child(node, reply);
+            if (node == NO_NODE) {
+                return false;
+            }
+            root = node;
+            return true;
+        }
+
+        private int child(int node, int m) {
+            for (int c = firstChild[node]; c < firstChild[node] + childCount[node]; ++c) {
+                if (move[c] == m) {
+                    return c;
+                }
+            }
+            return NO_NODE;
+        }
+
+        /** Run iterations until the budget or the deadline, or until the search is cancelled */
+        void search(Seed player, long budget, long deadline) {
+            playouts = 0;
+            while (playouts < budget && ((playouts & CLOCK_CHECK_MASK) != 0 || canContinue(deadline))) {
+                iterate(player);
+                playouts++;
+            }
+        }
+
+        private boolean canContinue(long deadline) {
+            if (Thread.currentThread().isInterrupted()) {
+                stopped = true;
+            }
+            return !stopped && System.nanoTime() - deadline < 0;
+        }
+
+        /** One select / expand / playout / backpropagate cycle from the root */
+        private void iterate(Seed rootPlayer) {
+            int node = root;
+            int depth = 0;
+            int count = 0;
+            path[0] = root;
+            Seed toMove = rootPlayer;
+            State state = State.PLAYING;
+            while (true) {
+                if (childCount[node] < 0) {
+                    if (visits[node] < EXPAND_VISITS || !expand(node)) {
+                        break;
+                    }
+                }
+                int c = selectChild(node);
+                state = board.play(toMove, move[c]);
+                count++;
+                path[++depth] = c;
+                node = c;
+                toMove = opposite(toMove);
+                if (state != State.PLAYING) {
+                    break;
+                }
+            }
+
+            // Random playout to the end of the game
+            while (state == State.PLAYING) {
+                int m = randomMove();
+                state = board.play(toMove, m);
+                count++;
+                toMove = opposite(toMove);
+            }
+
+            // The node at odd depth was reached by a move of rootPlayer
+            int rootPlayerPoints = (state == State.DRAW) ? 1
+                    : ((state == State.CROSS_WON) == (rootPlayer == Seed.CROSS)) ? 2 : 0;
+            for (int d = depth; d >= 0; --d) {
+                int n = path[d];
+                visits[n]++;
+                score[n] += ((d & 1) == 1) ? rootPlayerPoints : 2 - rootPlayerPoints;
+            }
+            for (int i = 0; i < count; ++i) {
+                board.undo();
+            }
+        }
+
+        /**
+         * A uniformly random empty cell; on large boards, a few more draws are taken to
+         * find one next to a seed, as far-off moves rarely matter to the result.
+         */
+        private int randomMove() {
+            int m = board.getEmptyCell(nextInt(board.getEmptyCount()));
+            if (board.getSize() > FULL_WIDTH_MAX_CELLS) {
+                for (int tries = 0; tries < PLAYOUT_TRIES && !hasNeighbour(m); ++tries) {
+                    m = board.getEmptyCell(nextInt(board.getEmptyCount()));
+                }
+            }
+            return m;
+        }
+
+        private boolean hasNeighbour(int index) {
+            int row = index / cols, col = index % cols;
+            for (int r = Math.max(0, row - 1); r <= Math.min(rows - 1, row + 1); ++r) {
+                for (int c = Math.max(0, col - 1); c <= Math.min(cols - 1, col + 1); ++c) {
+                    if (!board.isEmpty(r * cols + c)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /** UCT: the child maximising mean result plus exploration bonus; unvisited children first */
+        private int selectChild(int node) {
+            int first = firstChild[node];
+            int end = first + childCount[node];
+            double logParent = Math.log(visits[node]);
+            int best = first;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int c = first; c < end; ++c) {
+                int n = visits[c];
+                if (n == 0) {
+                    return c;
+                }
+                double value = score[c] / (2.0 * n) + EXPLORATION * Math.sqrt(logParent / n);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = c;
+                }
+            }
+            return best;
+        }
+
+        /** Add the children of node in random order; false if the tree is full */
+        private boolean expand(int node) {
+            int n = generateMoves();
+            if (n == 0 || size + n > nodeCapacity) {
+                return false;
+            }
+            for (int i = n - 1; i > 0; --i) {
+                int j = nextInt(i + 1);
+                int t = candidates[i];
+                candidates[i] = candidates[j];
+                candidates[j] = t;
+            }
+            firstChild[node] = size;
+            childCount[node] = n;
+            for (int i = 0; i < n; ++i) {
+                int c = size++;
+                move[c] = candidates[i];
+                childCount[c] = -1;
+                visits[c] = 0;
+                score[c] = 0;
+            }
+            return true;
+        }
+
+        /** Fill candidates with the moves worth expanding and return how many */
+        private int generateMoves() {
+            int n = 0;
+            if (board.getSize() <= FULL_WIDTH_MAX_CELLS) {
+                for (int i = 0; i < board.getEmptyCount(); ++i) {
+                    candidates[n++] = board.getEmptyCell(i);
+                }
+                return n;
+            }
+            if (board.getOccupied() == 0) {
+                candidates[n++] = (rows / 2) * cols + cols / 2;
+                return n;
+            }
+            stampGeneration++;
+            for (int index = 0; index < board.getSize(); ++index) {
+                if (board.isEmpty(index)) {
+                    continue;
+                }
+                int row = index / cols, col = index % cols;
+                for (int r = Math.max(0, row - NEIGHBOUR_RADIUS); r <= Math.min(rows - 1, row + NEIGHBOUR_RADIUS); ++r) {
+                    for (int c = Math.max(0, col - NEIGHBOUR_RADIUS); c <= Math.min(cols - 1, col + NEIGHBOUR_RADIUS); ++c) {
+                        int cell = r * cols + c;
+                        if (stamp[cell] != stampGeneration && board.isEmpty(cell)) {
+                            stamp[cell] = stampGeneration;
+                            candidates[n++] = cell;
+                        }
+                    }
+                }
+            }
+            return n;
+        }
+
+        /** A move winning at once, else one blocking the opponent's immediate win, else -1 */
+        int tacticalMove(Seed player) {
+            int block = -1;
+            Seed opponent = opposite(player);
+            for (int cell = 0; cell < board.getSize(); ++cell) {
+                if (!board.isEmpty(cell)) {
+                    continue;
+                }
+                State state = board.play(player, cell);
+                board.unplay(cell);
+                if (state != State.PLAYING && state != State.DRAW) {
+                    return cell;
+                }
+                if (block < 0) {
+                    state = board.play(opponent, cell);
+                    board.unplay(cell);
+                    if (state != State.PLAYING && state != State.DRAW) {
+                        block = cell;
+                    }
+                }
+            }
+            return block;
+        }
+
+        /** xorshift64*: a uniform int in [0, bound) */
+        private int nextInt(int bound) {
+            seed ^= seed >>> 12;
+            seed ^= seed << 25;
+            seed ^= seed >>> 27;
+            long r = (seed * 0x2545F4914F6CDD1DL) >>> 32;
+            return (int) ((r * bound) >>> 32);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The MeteredAI class wraps an AIPlayer and records how long each move took to choose
+ * (the "ai.think.time.<level>" histogram), how much searching it did (nodes for
+ * MinimaxAI, playouts for MctsAI, with MctsAI's playouts per second as a gauge) and a
+ * JFR AI Move event. Difficulty wraps every
+ * player it creates in one.
+ */
+public class MeteredAI implements AIPlayer {
+    private final AIPlayer player;
+    private final String level;
+    private final LatencyHistogram thinkTime;
+    private final LongAdder nodes = Metrics.counter(Metrics.AI_NODES);
+    private final LongAdder playouts = Metrics.counter(Metrics.AI_PLAYOUTS);
+    private final AtomicLong playoutRate = Metrics.gauge(Metrics.AI_PLAYOUT_RATE);
+
+    public MeteredAI(AIPlayer player, String level) {
+        this.player = player;
+        this.level = level;
+        this.thinkTime = Metrics.timer(Metrics.AI_THINK_TIME + level.toLowerCase());
+    }
+
+    /** The player being measured */
+    public AIPlayer getPlayer() {
+        return player;
+    }
+
+    @Override
+    public int selectMove(BitBoard board, Seed player, long deadline) {
+        Metrics.AIMoveEvent event = new Metrics.AIMoveEvent();
+        event.begin();
+        long start = System.nanoTime();
+        int move = this.player.selectMove(board, player, deadline);
+        thinkTime.record(System.nanoTime() - start);
+
+        long work = 0;
+        if (this.player instanceof MinimaxAI) {
+            work = ((MinimaxAI) this.player).getNodes();
+            nodes.add(work);
+        } else if (this.player instanceof MctsAI) {
+            MctsAI mcts = (MctsAI) this.player;
+            work = mcts.getPlayouts();
+            playouts.add(work);
+            playoutRate.set(Math.round(mcts.getPlayoutsPerSecond()));
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.difficulty = level;
+            event.boardSize = board.getRows() * board.getCols();
+            event.move = move;
+            event.work = work;
+            event.commit();
+        }
+        return move;
+    }
+}
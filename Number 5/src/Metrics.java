@@ -0,0 +1,185 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The Metrics class is the process-wide registry of counters, gauges (the last value
+ * set, e.g. a rate) and latency histograms for the game's hot paths: moves, AI thinking,
+ * rendering and sound. Recording is one LongAdder, AtomicLong or LatencyHistogram
+ * update; look a metric up once and keep the reference.
+ *
+ * The same paths also emit JFR events (AIMoveEvent, PaintEvent, SoundEvent), which cost
+ * nothing unless a recording is running, e.g. java -XX:StartFlightRecording ...
+ *
+ * A snapshot of every metric can be printed as text or JSON, and written periodically
+ * by startReporter(), which GameMain and MatchServer call when the system property
+ * tictactoe.metrics names a file ("-" for standard output; JSON if it ends in .json).
+ * tictactoe.metrics.interval sets the period in seconds (default 10).
+ */
+public final class Metrics {
+    /** Names of the metrics recorded by the game */
+    public static final String MOVES = "game.moves";
+    public static final String MOVE_TIME = "game.move.time";       // sampled, see GameSession
+    public static final String AI_THINK_TIME = "ai.think.time.";   // + difficulty
+    public static final String AI_NODES = "ai.nodes";
+    public static final String AI_PLAYOUTS = "ai.playouts";
+    public static final String AI_PLAYOUT_RATE = "ai.playouts.per.second";   // of the last MCTS search
+    public static final String PAINT_TIME = "render.paint.time";
+    public static final String SOUND_LATENCY = "sound.latency";
+    public static final String SOUND_DROPPED = "sound.dropped";
+    public static final String FIRST_FRAME_TIME = "startup.first.frame";
+    public static final String ASSET_LOAD_TIME = "startup.assets";
+
+    private static final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, AtomicLong> gauges = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, LatencyHistogram> timers = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    /** Return the counter with this name, creating it on first use */
+    public static LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    /** Return the gauge with this name, creating it (at 0) on first use */
+    public static AtomicLong gauge(String name) {
+        return gauges.computeIfAbsent(name, n -> new AtomicLong());
+    }
+
+    /** Return the latency histogram (in nanoseconds) with this name, creating it on first use */
+    public static LatencyHistogram timer(String name) {
+        return timers.computeIfAbsent(name, n -> new LatencyHistogram());
+    }
+
+    /** Every metric as text, one per line, sorted by name; times in microseconds */
+    public static String snapshot() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, LongAdder> e : new TreeMap<>(counters).entrySet()) {
+            sb.append(String.format("%-28s %d%n", e.getKey(), e.getValue().sum()));
+        }
+        for (Map.Entry<String, AtomicLong> e : new TreeMap<>(gauges).entrySet()) {
+            sb.append(String.format("%-28s %d%n", e.getKey(), e.getValue().get()));
+        }
+        for (Map.Entry<String, LatencyHistogram> e : new TreeMap<>(timers).entrySet()) {
+            LatencyHistogram h = e.getValue();
+            sb.append(String.format("%-28s count=%d mean=%.1f p50=%.1f p99=%.1f p99.9=%.1f max=%.1f us%n",
+                    e.getKey(), h.getCount(), h.getMean() / 1e3, h.getPercentile(50) / 1e3,
+                    h.getPercentile(99) / 1e3, h.getPercentile(99.9) / 1e3, h.getMax() / 1e3));
+        }
+        return sb.toString();
+    }
+
+    /** Every metric as one JSON object; times in nanoseconds */
+    public static String snapshotJson() {
+        StringBuilder sb = new StringBuilder("{\"timestamp\":").append(System.currentTimeMillis());
+        sb.append(",\"counters\":{");
+        String separator = "";
+        for (Map.Entry<String, LongAdder> e : new TreeMap<>(counters).entrySet()) {
+            sb.append(separator).append('"').append(e.getKey()).append("\":").append(e.getValue().sum());
+            separator = ",";
+        }
+        sb.append("},\"gauges\":{");
+        separator = "";
+        for (Map.Entry<String, AtomicLong> e : new TreeMap<>(gauges).entrySet()) {
+            sb.append(separator).append('"').append(e.getKey()).append("\":").append(e.getValue().get());
+            separator = ",";
+        }
+        sb.append("},\"timers\":{");
+        separator = "";
+        for (Map.Entry<String, LatencyHistogram> e : new TreeMap<>(timers).entrySet()) {
+            LatencyHistogram h = e.getValue();
+            sb.append(separator).append('"').append(e.getKey()).append("\":{")
+                    .append("\"count\":").append(h.getCount())
+                    .append(",\"mean\":").append(Math.round(h.getMean()))
+                    .append(",\"p50\":").append(h.getPercentile(50))
+                    .append(",\"p99\":").append(h.getPercentile(99))
+                    .append(",\"p999\":").append(h.getPercentile(99.9))
+                    .append(",\"max\":").append(h.getMax()).append('}');
+            separator = ",";
+        }
+        return sb.append("}}").toString();
+    }
+
+    /**
+     * Start writing a snapshot every interval seconds to the file named by the system
+     * property tictactoe.metrics, if it is set; does nothing otherwise.
+     */
+    public static void startReporter() {
+        String target = System.getProperty("tictactoe.metrics");
+        if (target == null || target.isEmpty()) {
+            return;
+        }
+        long interval = Long.getLong("tictactoe.metrics.interval", 10);
+        boolean json = target.endsWith(".json");
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Metrics reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> {
+            String snapshot = json ? snapshotJson() + System.lineSeparator() : snapshot();
+            if (target.equals("-")) {
+                System.out.print(snapshot);
+                return;
+            }
+            try {
+                Path file = Paths.get(target);
+                Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+                Files.write(temp, snapshot.getBytes(StandardCharsets.UTF_8));
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                System.err.println("Couldn't write metrics to " + target + ": " + e.getMessage());
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /** One move chosen by an AI player */
+    @Name("tictactoe.AIMove")
+    @Label("AI Move")
+    @Category("Tic Tac Toe")
+    static final class AIMoveEvent extends Event {
+        @Label("Difficulty")
+        String difficulty;
+        @Label("Board Size")
+        int boardSize;
+        @Label("Move")
+        int move;
+        @Label("Nodes or Playouts")
+        long work;
+    }
+
+    /** One repaint of the board */
+    @Name("tictactoe.Paint")
+    @Label("Board Paint")
+    @Category("Tic Tac Toe")
+    static final class PaintEvent extends Event {
+        @Label("Cells Painted")
+        int cells;
+    }
+
+    /** One sound effect started on the audio thread (loading it first if needed) */
+    @Name("tictactoe.Sound")
+    @Label("Sound Effect")
+    @Category("Tic Tac Toe")
+    static final class SoundEvent extends Event {
+        @Label("Effect")
+        String effect;
+    }
+}
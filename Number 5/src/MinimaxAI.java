@@ -0,0 +1,550 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * The MinimaxAI class searches the game tree with negamax and alpha-beta pruning
+ * ("Medium", "Hard" and "Perfect" difficulty).
+ *
+ * - Moves are played and taken back (BitBoard.undo) on one board in place, no copying per node.
+ * - Each searcher keeps a ThreatIndex next to its board. A side that can win at once
+ *   scores the win without searching, a side facing two immediate wins is lost, and a
+ *   side facing one only considers the block. Other moves are ordered by the
+ *   transposition table move first, then forks and threats (created or blocked), then
+ *   the history heuristic (moves that caused cut-offs before) and closeness to the centre.
+ * - Results are cached in a TranspositionTable keyed by Zobrist hash. The hash of all
+ *   8 symmetries of a square board (4 for a rectangular one) is maintained, and the
+ *   smallest is used as the key, so mirrored and rotated positions share one entry.
+ * - Positions past the depth limit are scored by the open winning windows of each
+ *   player, which the ThreatIndex keeps as a running sum.
+ * - The search deepens iteratively (depth 1, 2, 3, ...) until the depth limit or the
+ *   caller's deadline; when time runs out, the best move of the deepest completed
+ *   iteration is returned.
+ * - With more than one thread, helper searchers run the same iterative deepening on
+ *   the shared pool (lazy SMP): they start at staggered depths and try root moves in a
+ *   different order, and share their results only through the transposition table.
+ *
+ * On 3x3 a full-depth search is instant; larger boards rely on the depth limit and
+ * deadline, and only consider cells near the seeds already placed.
+ */
+public class MinimaxAI implements AIPlayer {
+    /** Score of a win at the root; wins further away score less */
+    static final int WIN_SCORE = 1_000_000;
+    /** Scores beyond this are wins (or losses) found by the search */
+    static final int WIN_THRESHOLD = WIN_SCORE - 10_000;
+    private static final int INFINITY = WIN_SCORE + 1;
+    /** Check the clock once every 1024 nodes */
+    private static final int NODE_CHECK_MASK = 1023;
+    /** Boards with more cells only consider moves within 2 cells of a placed seed */
+    private static final int FULL_WIDTH_MAX_CELLS = 25;
+    private static final int NEIGHBOUR_RADIUS = 2;
+    /** Boards up to this size are searched on one thread; helpers would only add overhead */
+    private static final int SINGLE_THREAD_MAX_CELLS = 9;
+    /** Move ordering bonus per threat level, above any history score */
+    private static final int THREAT_ORDER_BONUS = 1 << 24;
+    /** Default transposition table size: 2^20 entries (16 MB) */
+    private static final int TABLE_LOG2_SIZE = 20;
+
+    /** Worker threads shared by every MinimaxAI for its helper searchers */
+    private static final ForkJoinPool SEARCH_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    private final int maxDepth;
+    private final int threads;
+    private final TranspositionTable table;
+
+    // Tables for the current board shape, rebuilt when the dimensions change
+    private int rows = -1, cols = -1, winLength = -1;
+    private int[][] symmetries;   // symmetries[s][cell] = cell after transform s
+    private int[][] inverse;      // inverse[s][symmetries[s][cell]] = cell
+    private long[][] zobrist;     // zobrist[seed ordinal][cell]
+    private long sideKey;
+    private int[] centrality;
+    private boolean restrictMoves;
+    private Searcher[] searchers;
+    private ForkJoinTask<?>[] helperTasks;
+
+    // Shared state of the current search; the best result is guarded by resultLock
+    private final Object resultLock = new Object();
+    private volatile boolean stopped;
+    private long deadline;
+    private int bestDepth, bestMove, bestScore;
+    private long nodes;
+
+    /** Constructor for a single-threaded search limited to maxDepth plies */
+    public MinimaxAI(int maxDepth) {
+        this(maxDepth, 1);
+    }
+
+    /**
+     * Constructor for a search limited to maxDepth plies (Integer.MAX_VALUE for a full
+     * search) running on the given number of threads.
+     */
+    public MinimaxAI(int maxDepth, int threads) {
+        this(maxDepth, threads, TABLE_LOG2_SIZE);
+    }
+
+    /** Constructor as above, with a transposition table of 2^tableLog2Size entries */
+    public MinimaxAI(int maxDepth, int threads, int tableLog2Size) {
+        this.maxDepth = maxDepth;
+        this.threads = Math.max(1, threads);
+        this.table = new TranspositionTable(tableLog2Size);
+    }
+
+    @Override
+    public synchronized int selectMove(BitBoard position, Seed player, long deadline) {
+        prepare(position);
+        this.deadline = deadline;
+        stopped = false;
+        bestDepth = 0;
+        bestMove = -1;
+        bestScore = -INFINITY;
+        int limit = Math.min(maxDepth, position.getSize() - position.getOccupied());
+        int helpers = (position.getSize() <= SINGLE_THREAD_MAX_CELLS) ? 0 : searchers.length - 1;
+
+        for (int i = 0; i <= helpers; ++i) {
+            searchers[i].start(position);
+        }
+        int fallback = searchers[0].firstMove(player);
+
+        ForkJoinTask<?>[] tasks = helperTasks;
+        for (int i = 0; i < helpers; ++i) {
+            Searcher helper = searchers[i + 1];
+            int startDepth = 1 + (i + 1) % 2;
+            tasks[i] = SEARCH_POOL.submit(() -> helper.iterate(player, startDepth, limit));
+        }
+        searchers[0].iterate(player, 1, limit);
+        stopped = true;
+        for (int i = 0; i < helpers; ++i) {
+            tasks[i].join();
+            tasks[i] = null;
+        }
+
+        nodes = 0;
+        for (int i = 0; i <= helpers; ++i) {
+            nodes += searchers[i].nodes;
+        }
+        synchronized (resultLock) {
+            return (bestMove >= 0) ? bestMove : fallback;
+        }
+    }
+
+    /** Forget every cached search result */
+    public synchronized void clearTable() {
+        table.clear();
+    }
+
+    /** Number of nodes visited (by all threads) in the last search */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /** Score of the chosen move in the last search, from the mover's point of view */
+    public int getScore() {
+        return bestScore;
+    }
+
+    /** Depth of the deepest iteration completed in the last search */
+    public int getCompletedDepth() {
+        return bestDepth;
+    }
+
+    /** Record the result of a completed iteration, keeping the deepest one */
+    private void report(int depth, int move, int score) {
+        synchronized (resultLock) {
+            if (depth > bestDepth) {
+                bestDepth = depth;
+                bestMove = move;
+                bestScore = score;
+            }
+        }
+        if (Math.abs(score) > WIN_THRESHOLD) {
+            stopped = true; // a forced result; searching deeper cannot change it
+        }
+    }
+
+    /**
+     * One search thread: its own copy of the position, hashes, move buffers and history.
+     * Only the transposition table is shared between searchers.
+     */
+    private final class Searcher {
+        private final int id;
+        private final BitBoard board;
+        private final ThreatIndex threats;
+        private final long[] hashes;
+        private final int[] history;
+        private final int[][] moveBuffer, scoreBuffer;
+        private final int[] stamp;
+        private int stampGeneration;
+        private int canonicalSym;
+        private int rootBest;
+        private boolean aborted;
+        private long nodes;
+
+        Searcher(int id, BitBoard shape) {
+            int size = shape.getSize();
+            this.id = id;
+            this.board = shape.copy();
+            this.threats = new ThreatIndex(shape.getRows(), shape.getCols(), shape.getWinLength());
+            this.hashes = new long[symmetries.length];
+            this.history = new int[size];
+            this.moveBuffer = new int[size + 1][size];
+            this.scoreBuffer = new int[size + 1][size];
+            this.stamp = new int[size];
+        }
+
+        /** Load the root position and reset the per-search counters */
+        void start(BitBoard position) {
+            board.copyFrom(position);
+            Arrays.fill(hashes, 0L);
+            for (int index = 0; index < board.getSize(); ++index) {
+                Seed seed = board.get(index);
+                if (seed != Seed.NO_SEED) {
+                    updateHashes(seed, index);
+                }
+            }
+            threats.load(board);
+            for (int index = 0; index < history.length; ++index) {
+                history[index] >>= 1; // age the history from earlier moves
+            }
+            aborted = false;
+            nodes = 0;
+        }
+
+        /** The first move in search order, played if not even depth 1 completes */
+        int firstMove(Seed player) {
+            long key = canonicalKey(player);
+            generateMoves(player, 0, tableMove(table.probe(key), canonicalSym));
+            return moveBuffer[0][0];
+        }
+
+        /** Iterative deepening from startDepth to limit, until stopped */
+        void iterate(Seed player, int startDepth, int limit) {
+            for (int depth = startDepth; depth <= limit && !stopped; ++depth) {
+                int score = searchRoot(player, depth);
+                if (aborted) {
+                    break;
+                }
+                report(depth, rootBest, score);
+            }
+        }
+
+        private int searchRoot(Seed player, int depth) {
+            Seed opponent = (player == Seed.CROSS) ? Seed.NOUGHT : Seed.CROSS;
+            long key = canonicalKey(player);
+            int sym = canonicalSym;
+            int count = generateMoves(player, 0, tableMove(table.probe(key), sym));
+            int[] moves = moveBuffer[0];
+            if (id > 0 && count > 2) {
+                rotate(moves, 1, count, id); // helpers diverge after the best-known move
+            }
+
+            rootBest = moves[0];
+            int alpha = -INFINITY;
+            for (int i = 0; i < count; ++i) {
+                int score = scoreMove(player, opponent, moves[i], depth, 0, alpha, INFINITY);
+                if (aborted) {
+                    return alpha;
+                }
+                if (score > alpha) {
+                    alpha = score;
+                    rootBest = moves[i];
+                }
+            }
+            table.store(key, toTable(alpha, 0), depth, TranspositionTable.EXACT, symmetries[sym][rootBest]);
+            return alpha;
+        }
+
+        private int negamax(Seed player, int depth, int ply, int alpha, int beta) {
+            if ((++nodes & NODE_CHECK_MASK) == 0
+                    && (stopped || System.nanoTime() > deadline || Thread.currentThread().isInterrupted())) {
+                stopped = true;
+                aborted = true;
+            }
+            if (aborted) {
+                return 0;
+            }
+            Seed opponent = (player == Seed.CROSS) ? Seed.NOUGHT : Seed.CROSS;
+            if (threats.getWinCount(player) > 0) {
+                return WIN_SCORE - (ply + 1); // nothing beats winning with the next move
+            }
+            if (threats.getWinCount(opponent) > 1) {
+                return -(WIN_SCORE - (ply + 2)); // only one of them can be blocked
+            }
+
+            int alphaOrig = alpha;
+            long key = canonicalKey(player);
+            int sym = canonicalSym;
+            long entry = table.probe(key);
+            if (entry != 0 && TranspositionTable.depth(entry) >= depth) {
+                int value = fromTable(TranspositionTable.value(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT) {
+                    return value;
+                } else if (bound == TranspositionTable.LOWER) {
+                    alpha = Math.max(alpha, value);
+                } else {
+                    beta = Math.min(beta, value);
+                }
+                if (alpha >= beta) {
+                    return value;
+                }
+            }
+            if (depth == 0) {
+                return threats.getScore(player);
+            }
+
+            int count = generateMoves(player, ply, tableMove(entry, sym));
+            int[] moves = moveBuffer[ply];
+            int best = -INFINITY;
+            int bestMove = moves[0];
+            for (int i = 0; i < count; ++i) {
+                int move = moves[i];
+                int score = scoreMove(player, opponent, move, depth, ply, alpha, beta);
+                if (aborted) {
+                    return 0;
+                }
+                if (score > best) {
+                    best = score;
+                    bestMove = move;
+                }
+                if (score > alpha) {
+                    alpha = score;
+                }
+                if (alpha >= beta) {
+                    history[move] += depth * depth;
+                    break;
+                }
+            }
+
+            int bound = (best <= alphaOrig) ? TranspositionTable.UPPER
+                    : (best >= beta) ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+            table.store(key, toTable(best, ply), depth, bound, symmetries[sym][bestMove]);
+            return best;
+        }
+
+        /** Play move, score it from the mover's point of view, and take it back */
+        private int scoreMove(Seed player, Seed opponent, int move, int depth, int ply, int alpha, int beta) {
+            State state = board.play(player, move);
+            updateHashes(player, move);
+            threats.play(player, move);
+            int score;
+            if (state == State.PLAYING) {
+                score = -negamax(opponent, depth - 1, ply + 1, -beta, -alpha);
+            } else if (state == State.DRAW) {
+                score = 0;
+            } else {
+                score = WIN_SCORE - (ply + 1);
+            }
+            board.undo();
+            updateHashes(player, move);
+            threats.undo(player, move);
+            return score;
+        }
+
+        /**
+         * Fill moveBuffer[ply] with the candidate moves for player, best first, and return
+         * how many. A win at once is the only candidate; otherwise, if the opponent threatens
+         * to win, only the blocks are. The transposition table move (if any) is tried first.
+         */
+        private int generateMoves(Seed player, int ply, int tableMove) {
+            int[] moves = moveBuffer[ply];
+            int[] scores = scoreBuffer[ply];
+            Seed opponent = (player == Seed.CROSS) ? Seed.NOUGHT : Seed.CROSS;
+            if (threats.getWinCount(player) > 0) {
+                moves[0] = threats.getWinCell(player, 0);
+                return 1;
+            }
+            int count = threats.getWinCount(opponent);
+            if (count > 0) {
+                for (int i = 0; i < count; ++i) {
+                    moves[i] = threats.getWinCell(opponent, i);
+                }
+                return count;
+            }
+
+            int size = board.getSize();
+            if (restrictMoves && board.getOccupied() > 0) {
+                markNeighbours();
+                for (int index = 0; index < size; ++index) {
+                    if (stamp[index] == stampGeneration && board.isEmpty(index)) {
+                        moves[count++] = index;
+                    }
+                }
+            } else if (restrictMoves) {
+                moves[count++] = (rows / 2) * cols + cols / 2;
+            } else {
+                count = board.getEmptyCount();
+                for (int i = 0; i < count; ++i) {
+                    moves[i] = board.getEmptyCell(i);
+                }
+            }
+
+            // Insertion sort by score, highest first
+            for (int i = 0; i < count; ++i) {
+                int move = moves[i];
+                int score = (move == tableMove) ? Integer.MAX_VALUE
+                        : threatLevel(player, opponent, move) * THREAT_ORDER_BONUS
+                        + Math.min(history[move], THREAT_ORDER_BONUS - 1) + centrality[move];
+                int j = i;
+                while (j > 0 && scores[j - 1] < score) {
+                    moves[j] = moves[j - 1];
+                    scores[j] = scores[j - 1];
+                    j--;
+                }
+                moves[j] = move;
+                scores[j] = score;
+            }
+            return count;
+        }
+
+        /** 3 for a fork, 2 for blocking one, 1 for a threat, 0 for a quiet move */
+        private int threatLevel(Seed player, Seed opponent, int move) {
+            int created = threats.getThreatsCreated(player, move);
+            if (created > 1) {
+                return 3;
+            } else if (threats.getThreatsCreated(opponent, move) > 1) {
+                return 2;
+            }
+            return created;
+        }
+
+        /** Stamp every cell within NEIGHBOUR_RADIUS of a placed seed with the current generation */
+        private void markNeighbours() {
+            stampGeneration++;
+            for (int index = 0; index < board.getSize(); ++index) {
+                if (board.isEmpty(index)) {
+                    continue;
+                }
+                int row = index / cols, col = index % cols;
+                for (int r = Math.max(0, row - NEIGHBOUR_RADIUS); r <= Math.min(rows - 1, row + NEIGHBOUR_RADIUS); ++r) {
+                    for (int c = Math.max(0, col - NEIGHBOUR_RADIUS); c <= Math.min(cols - 1, col + NEIGHBOUR_RADIUS); ++c) {
+                        stamp[r * cols + c] = stampGeneration;
+                    }
+                }
+            }
+        }
+
+        /** Toggle the seed at index in the hash of every symmetry */
+        private void updateHashes(Seed seed, int index) {
+            long[] keys = zobrist[seed.ordinal()];
+            for (int s = 0; s < symmetries.length; ++s) {
+                hashes[s] ^= keys[symmetries[s][index]];
+            }
+        }
+
+        /** Return the smallest hash over all symmetries, and remember which one it was */
+        private long canonicalKey(Seed player) {
+            long key = hashes[0];
+            canonicalSym = 0;
+            for (int s = 1; s < symmetries.length; ++s) {
+                if (hashes[s] < key) {
+                    key = hashes[s];
+                    canonicalSym = s;
+                }
+            }
+            return (player == Seed.NOUGHT) ? key ^ sideKey : key;
+        }
+
+        /** Map the move stored in a table entry back from canonical to board coordinates */
+        private int tableMove(long entry, int sym) {
+            if (entry == 0) {
+                return -1;
+            }
+            int move = TranspositionTable.move(entry);
+            if (move < 0 || move >= board.getSize()) {
+                return -1;
+            }
+            move = inverse[sym][move];
+            return board.isEmpty(move) ? move : -1;
+        }
+    }
+
+    /** Rotate moves[from..to) left by n places */
+    private static void rotate(int[] moves, int from, int to, int n) {
+        int length = to - from;
+        n %= length;
+        if (n == 0) {
+            return;
+        }
+        int[] copy = Arrays.copyOfRange(moves, from, to);
+        for (int i = 0; i < length; ++i) {
+            moves[from + i] = copy[(i + n) % length];
+        }
+    }
+
+    /** Win scores are stored relative to the node, so they stay valid at any ply */
+    private static int toTable(int value, int ply) {
+        if (value > WIN_THRESHOLD) return value + ply;
+        if (value < -WIN_THRESHOLD) return value - ply;
+        return value;
+    }
+
+    private static int fromTable(int value, int ply) {
+        if (value > WIN_THRESHOLD) return value - ply;
+        if (value < -WIN_THRESHOLD) return value + ply;
+        return value;
+    }
+
+    /** Build the symmetry, hashing, evaluation and searcher tables when the board shape changes */
+    private void prepare(BitBoard position) {
+        if (position.getRows() == rows && position.getCols() == cols && position.getWinLength() == winLength) {
+            return;
+        }
+        rows = position.getRows();
+        cols = position.getCols();
+        winLength = position.getWinLength();
+        int size = rows * cols;
+
+        int count = (rows == cols) ? 8 : 4;
+        symmetries = new int[count][size];
+        inverse = new int[count][size];
+        for (int s = 0; s < count; ++s) {
+            for (int row = 0; row < rows; ++row) {
+                for (int col = 0; col < cols; ++col) {
+                    int index = row * cols + col;
+                    int mapped = transform(s, row, col);
+                    symmetries[s][index] = mapped;
+                    inverse[s][mapped] = index;
+                }
+            }
+        }
+
+        Random random = new Random(0x5EED);
+        zobrist = new long[2][size];
+        for (int seed = 0; seed < 2; ++seed) {
+            for (int index = 0; index < size; ++index) {
+                zobrist[seed][index] = random.nextLong();
+            }
+        }
+        sideKey = random.nextLong();
+
+        centrality = new int[size];
+        for (int index = 0; index < size; ++index) {
+            int row = index / cols, col = index % cols;
+            centrality[index] = -(Math.abs(2 * row - (rows - 1)) + Math.abs(2 * col - (cols - 1)));
+        }
+        restrictMoves = size > FULL_WIDTH_MAX_CELLS;
+        searchers = new Searcher[threads];
+        for (int i = 0; i < threads; ++i) {
+            searchers[i] = new Searcher(i, position);
+        }
+        helperTasks = new ForkJoinTask<?>[threads - 1];
+        table.clear();
+    }
+
+    /** Return the index of (row, col) after symmetry s */
+    private int transform(int s, int row, int col) {
+        int lastRow = rows - 1, lastCol = cols - 1;
+        switch (s) {
+            case 1: return row * cols + (lastCol - col);              // mirror left-right
+            case 2: return (lastRow - row) * cols + col;              // mirror top-bottom
+            case 3: return (lastRow - row) * cols + (lastCol - col);  // rotate 180
+            case 4: return col * cols + row;                          // transpose
+            case 5: return col * cols + (lastRow - row);              // rotate 90
+            case 6: return (lastCol - col) * cols + row;              // rotate 270
+            case 7: return (lastCol - col) * cols + (lastRow - row);  // anti-transpose
+            default: return row * cols + col;
+        }
+    }
+}
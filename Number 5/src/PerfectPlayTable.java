@@ -0,0 +1,187 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The PerfectPlayTable class holds the solved 3x3 game: for every position reachable
+ * from an empty board, the game-theoretic value for the side to move and an optimal move.
+ *
+ * Positions are indexed by their base-3 key: the sum over all cells of
+ * digit * 3^(row * 3 + col), with digit 0 for an empty cell, 1 for CROSS and 2 for
+ * NOUGHT. Each of the 3^9 entries is one byte: the low 4 bits hold the best move
+ * (NO_MOVE if the game is over) and the next 2 bits the value (UNREACHABLE, LOSS, DRAW
+ * or WIN, for the side to move).
+ *
+ * The table is generated once by running main (the build step), which writes
+ * "data/ttt3.tbl" under the source folder. At run time the file is memory-mapped, so
+ * answering a move is a single lookup; if the file is missing the table is solved in
+ * memory instead, which takes a few milliseconds.
+ */
+public class PerfectPlayTable {
+    /** Resource name of the table, relative to the classpath root */
+    public static final String RESOURCE = "data/ttt3.tbl";
+
+    public static final int SIZE = 3;
+    public static final int CELLS = SIZE * SIZE;
+    public static final int ENTRIES = 19683; // 3^9
+
+    /** Values, for the side to move */
+    public static final int UNREACHABLE = 0, LOSS = 1, DRAW = 2, WIN = 3;
+    public static final int NO_MOVE = 0xF;
+
+    private static final int MAGIC = 0x54545433; // "TTT3"
+    private static final int HEADER_BYTES = 8;
+    private static final int[] POW3 = {1, 3, 9, 27, 81, 243, 729, 2187, 6561};
+
+    private final ByteBuffer entries;
+
+    private PerfectPlayTable(ByteBuffer entries) {
+        this.entries = entries;
+    }
+
+    /** Lazily loaded shared instance */
+    private static class Holder {
+        static final PerfectPlayTable INSTANCE = load();
+    }
+
+    public static PerfectPlayTable getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /** Return true if the table can answer for positions of this board */
+    public static boolean supports(BitBoard board) {
+        return board.getRows() == SIZE && board.getCols() == SIZE && board.getWinLength() == SIZE;
+    }
+
+    /** Return the base-3 key of a 3x3 position */
+    public static int keyOf(BitBoard board) {
+        int key = 0;
+        for (int index = 0; index < CELLS; ++index) {
+            Seed seed = board.get(index);
+            if (seed == Seed.CROSS) {
+                key += POW3[index];
+            } else if (seed == Seed.NOUGHT) {
+                key += 2 * POW3[index];
+            }
+        }
+        return key;
+    }
+
+    /** Return the optimal move for the position with this key, or NO_MOVE */
+    public int bestMove(int key) {
+        return entries.get(key) & 0xF;
+    }
+
+    /** Return the value of the position with this key for the side to move */
+    public int value(int key) {
+        return (entries.get(key) >> 4) & 0x3;
+    }
+
+    /** Map the table file, falling back to solving in memory if it cannot be found */
+    private static PerfectPlayTable load() {
+        URL url = PerfectPlayTable.class.getClassLoader().getResource(RESOURCE);
+        try {
+            ByteBuffer buffer;
+            if (url == null) {
+                System.err.println("Couldn't find file " + RESOURCE + ", solving in memory");
+                return new PerfectPlayTable(ByteBuffer.wrap(solve()).asReadOnlyBuffer());
+            } else if ("file".equals(url.getProtocol())) {
+                try (FileChannel channel = FileChannel.open(Paths.get(url.toURI()), StandardOpenOption.READ)) {
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+            } else {
+                // Packaged in a jar: a resource cannot be mapped, so copy it off-heap once
+                try (InputStream in = url.openStream()) {
+                    byte[] bytes = in.readAllBytes();
+                    buffer = ByteBuffer.allocateDirect(bytes.length).put(bytes);
+                    buffer.flip();
+                }
+            }
+            if (buffer.capacity() != HEADER_BYTES + ENTRIES || buffer.getInt(0) != MAGIC
+                    || buffer.getInt(4) != ENTRIES) {
+                throw new IOException("Corrupt table " + RESOURCE);
+            }
+            buffer.position(HEADER_BYTES);
+            return new PerfectPlayTable(buffer.slice());
+        } catch (IOException | URISyntaxException e) {
+            e.printStackTrace();
+            return new PerfectPlayTable(ByteBuffer.wrap(solve()).asReadOnlyBuffer());
+        }
+    }
+
+    /** Solve every position reachable from the empty board and return the packed entries */
+    static byte[] solve() {
+        byte[] table = new byte[ENTRIES];
+        byte[] plies = new byte[ENTRIES]; // moves until the game ends under perfect play
+        solve(new BitBoard(SIZE, SIZE, SIZE), Seed.CROSS, 0, table, plies);
+        return table;
+    }
+
+    /** Negamax over the whole game tree, memoised by key; returns the value for player */
+    private static int solve(BitBoard board, Seed player, int key, byte[] table, byte[] plies) {
+        if (table[key] != 0) {
+            return (table[key] >> 4) & 0x3;
+        }
+        Seed opponent = (player == Seed.CROSS) ? Seed.NOUGHT : Seed.CROSS;
+        int digit = (player == Seed.CROSS) ? 1 : 2;
+        int bestValue = 0, bestPlies = 0, bestMove = NO_MOVE;
+        for (int move = 0; move < CELLS; ++move) {
+            if (!board.isEmpty(move)) {
+                continue;
+            }
+            int child = key + digit * POW3[move];
+            State state = board.play(player, move);
+            int value, length;
+            if (state == State.PLAYING) {
+                value = LOSS + WIN - solve(board, opponent, child, table, plies); // opponent's loss is our win
+                length = plies[child] + 1;
+            } else {
+                int terminal = (state == State.DRAW) ? DRAW : LOSS; // the opponent to move has lost
+                table[child] = (byte) ((terminal << 4) | NO_MOVE);
+                value = (state == State.DRAW) ? DRAW : WIN;
+                length = 1;
+            }
+            board.unplay(move);
+            // Prefer the better value; among equals, win fastest and lose slowest
+            boolean better = value > bestValue
+                    || (value == bestValue && (value == WIN ? length < bestPlies : length > bestPlies));
+            if (better) {
+                bestValue = value;
+                bestPlies = length;
+                bestMove = move;
+            }
+        }
+        table[key] = (byte) ((bestValue << 4) | bestMove);
+        plies[key] = (byte) bestPlies;
+        return bestValue;
+    }
+
+    /** Build step: solve the game and write the table file (default: src/data/ttt3.tbl) */
+    public static void main(String[] args) throws IOException {
+        Path path = Paths.get(args.length > 0 ? args[0] : "src/" + RESOURCE);
+        long start = System.nanoTime();
+        byte[] table = solve();
+        int reachable = 0;
+        for (byte entry : table) {
+            if (entry != 0) reachable++;
+        }
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        try (OutputStream out = Files.newOutputStream(path)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(ENTRIES);
+            out.write(header.array());
+            out.write(table);
+        }
+        System.out.printf("Solved %d positions in %.1f ms, wrote %s%n",
+                reachable, (System.nanoTime() - start) / 1e6, path);
+    }
+}
@@ -0,0 +1,439 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The PerfectPlayTable4x4 class holds the solved 4x4 game for one win length (3 or 4):
+ * the game-theoretic value for the side to move of every position, 2 bits each.
+ *
+ * Positions are indexed by the same base-3 key as PerfectPlayTable, split into its high
+ * and low 8 cells: key = hi * 3^8 + lo. Each hi has a row of 3^8 two-bit entries padded
+ * to whole bytes (1641 bytes), so the 3^16 (about 43M) positions take 10.8 MB. The value
+ * is UNREACHABLE (also for positions that cannot arise, e.g. with wrong counts), LOSS,
+ * DRAW or WIN. No move is stored: the best move is the child with the best value, found
+ * with at most 16 lookups.
+ *
+ * The table is solved by backward induction, one level of stones at a time from the
+ * full board down to the empty one: every position of a level depends only on the level
+ * after it, so the rows of a level are shared out among threads with nothing to lock.
+ * It is written straight into off-heap memory, so the heap stays small.
+ *
+ * main (the build step) solves into a memory-mapped file "data/ttt4x4k{winLength}.tbl"
+ * under the source folder. After each level the file is flushed and the level recorded
+ * in its header, so an interrupted run resumes from the last complete level. Both tables
+ * are kept in the source tree, like ttt3.tbl. At run time a fully solved file is mapped
+ * read-only; if it is missing the table is solved in memory instead, which takes a
+ * second or two. Each table is loaded by its own holder
+ * class, so lookups after the first take no lock; a server loads both at startup so no
+ * request waits for them.
+ */
+public class PerfectPlayTable4x4 {
+    public static final int SIZE = 4;
+    public static final int CELLS = SIZE * SIZE;
+    public static final int NO_MOVE = PerfectPlayTable.NO_MOVE;
+
+    /** Positions per half key (3^8), and bytes per row of 2-bit entries */
+    private static final int HALF = 6561;
+    private static final int ROW_BYTES = (HALF + 3) / 4;
+    private static final int[] POW3 = {1, 3, 9, 27, 81, 243, 729, 2187};
+
+    private static final int MAGIC = 0x54345834; // "T4X4"
+    /** Header: magic, win length, lowest level solved (CELLS + 1 before the first), entry rows */
+    private static final int HEADER_BYTES = 16;
+    private static final int SOLVED_OFFSET = 8;
+    private static final long FILE_BYTES = HEADER_BYTES + (long) HALF * ROW_BYTES;
+    /** Rows of a level claimed by a solver thread at a time */
+    private static final int CHUNK = 32;
+
+    /** Cells of CROSS and of NOUGHT (bits 0..7) in each half key */
+    private static final int[] HALF_CROSSES = new int[HALF], HALF_NOUGHTS = new int[HALF];
+    /** The half keys with x crosses and o noughts, in BY_COUNTS[x][o] */
+    private static final int[][][] BY_COUNTS = new int[9][9][];
+
+    static {
+        int[][] counts = new int[9][9];
+        for (int half = 0; half < HALF; ++half) {
+            for (int cell = 0, rest = half; cell < 8; ++cell, rest /= 3) {
+                if (rest % 3 == 1) {
+                    HALF_CROSSES[half] |= 1 << cell;
+                } else if (rest % 3 == 2) {
+                    HALF_NOUGHTS[half] |= 1 << cell;
+                }
+            }
+            counts[Integer.bitCount(HALF_CROSSES[half])][Integer.bitCount(HALF_NOUGHTS[half])]++;
+        }
+        for (int x = 0; x <= 8; ++x) {
+            for (int o = 0; o <= 8; ++o) {
+                BY_COUNTS[x][o] = new int[counts[x][o]];
+                counts[x][o] = 0;
+            }
+        }
+        for (int half = 0; half < HALF; ++half) {
+            int x = Integer.bitCount(HALF_CROSSES[half]);
+            int o = Integer.bitCount(HALF_NOUGHTS[half]);
+            BY_COUNTS[x][o][counts[x][o]++] = half;
+        }
+    }
+
+    private final ByteBuffer entries;
+    private final int winLength;
+
+    private PerfectPlayTable4x4(ByteBuffer entries, int winLength) {
+        this.entries = entries;
+        this.winLength = winLength;
+    }
+
+    /** Resource name of the table for this win length, relative to the classpath root */
+    public static String resourceName(int winLength) {
+        return "data/ttt4x4k" + winLength + ".tbl";
+    }
+
+    /** Return true if a table can answer for positions of this board */
+    public static boolean supports(BitBoard board) {
+        return board.getRows() == SIZE && board.getCols() == SIZE && board.getWinLength() >= 3;
+    }
+
+    /** Lazily loaded shared instances, one per win length */
+    private static class Holder3 {
+        static final PerfectPlayTable4x4 INSTANCE = load(3);
+    }
+
+    private static class Holder4 {
+        static final PerfectPlayTable4x4 INSTANCE = load(4);
+    }
+
+    /** Return the table for the win length of a supported board, loading it on first use */
+    public static PerfectPlayTable4x4 forBoard(BitBoard board) {
+        return forWinLength(board.getWinLength());
+    }
+
+    /** Return the table for win length 3 or 4, loading it on first use */
+    public static PerfectPlayTable4x4 forWinLength(int winLength) {
+        return (winLength == 3) ? Holder3.INSTANCE : Holder4.INSTANCE;
+    }
+
+    /** Return the value for the side to move of the position on board */
+    public int value(BitBoard board) {
+        int hi = 0, lo = 0;
+        for (int index = 0; index < CELLS; ++index) {
+            Seed seed = board.get(index);
+            int digit = (seed == Seed.CROSS) ? 1 : (seed == Seed.NOUGHT) ? 2 : 0;
+            if (index < 8) {
+                lo += digit * POW3[index];
+            } else {
+                hi += digit * POW3[index - 8];
+            }
+        }
+        return get(entries, 0, hi, lo);
+    }
+
+    /**
+     * Return an optimal move for player, or NO_MOVE if the game is over or the position
+     * cannot arise. Among equally good moves it wins at once if it can, and otherwise
+     * blocks a line the opponent could complete next move. The board is left unchanged.
+     */
+    public int bestMove(BitBoard board, Seed player) {
+        if (board.getState() != State.PLAYING || value(board) == PerfectPlayTable.UNREACHABLE) {
+            return NO_MOVE;
+        }
+        Seed opponent = (player == Seed.CROSS) ? Seed.NOUGHT : Seed.CROSS;
+        int bestMove = NO_MOVE, bestValue = 0, bestRank = -1;
+        for (int move = 0; move < CELLS; ++move) {
+            if (!board.isEmpty(move)) {
+                continue;
+            }
+            State state = board.play(player, move);
+            int value = (state == State.PLAYING) ? PerfectPlayTable.LOSS + PerfectPlayTable.WIN - value(board)
+                    : (state == State.DRAW) ? PerfectPlayTable.DRAW : PerfectPlayTable.WIN;
+            board.undo();
+            int rank = isWin(state) ? 2 : 0;
+            if (rank == 0) {
+                rank = isWin(board.play(opponent, move)) ? 1 : 0;
+                board.undo();
+            }
+            if (value > bestValue || (value == bestValue && rank > bestRank)) {
+                bestMove = move;
+                bestValue = value;
+                bestRank = rank;
+            }
+        }
+        return bestMove;
+    }
+
+    private static boolean isWin(State state) {
+        return state == State.CROSS_WON || state == State.NOUGHT_WON;
+    }
+
+    public int getWinLength() {
+        return winLength;
+    }
+
+    /** Map the table file, falling back to solving in memory if it cannot be found */
+    private static PerfectPlayTable4x4 load(int winLength) {
+        String resource = resourceName(winLength);
+        URL url = PerfectPlayTable4x4.class.getClassLoader().getResource(resource);
+        if (url == null) {
+            System.err.println("Couldn't find file " + resource + ", solving in memory");
+            return solveInMemory(winLength);
+        }
+        try {
+            ByteBuffer buffer;
+            if ("file".equals(url.getProtocol())) {
+                try (FileChannel channel = FileChannel.open(Paths.get(url.toURI()), StandardOpenOption.READ)) {
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+            } else {
+                // Packaged in a jar: a resource cannot be mapped, so copy it off-heap once
+                try (InputStream in = url.openStream()) {
+                    byte[] bytes = in.readAllBytes();
+                    buffer = ByteBuffer.allocateDirect(bytes.length).put(bytes);
+                    buffer.flip();
+                }
+            }
+            if (buffer.capacity() != FILE_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != winLength) {
+                throw new IOException("Corrupt table " + resource);
+            }
+            if (buffer.getInt(SOLVED_OFFSET) != 0) {
+                throw new IOException("Table " + resource + " is only solved down to level "
+                        + buffer.getInt(SOLVED_OFFSET) + "; run PerfectPlayTable4x4 to finish it");
+            }
+            buffer.position(HEADER_BYTES);
+            return new PerfectPlayTable4x4(buffer.slice(), winLength);
+        } catch (IOException | URISyntaxException e) {
+            e.printStackTrace();
+            return solveInMemory(winLength);
+        }
+    }
+
+    private static PerfectPlayTable4x4 solveInMemory(int winLength) {
+        ByteBuffer table = newTable(ByteBuffer.allocateDirect((int) FILE_BYTES), winLength);
+        new Solver(table, winLength, Runtime.getRuntime().availableProcessors(), null).solve();
+        table.position(HEADER_BYTES);
+        return new PerfectPlayTable4x4(table.slice(), winLength);
+    }
+
+    /** Write the header of an empty table, with no level solved yet */
+    private static ByteBuffer newTable(ByteBuffer table, int winLength) {
+        return table.putInt(0, MAGIC).putInt(4, winLength).putInt(SOLVED_OFFSET, CELLS + 1).putInt(12, HALF);
+    }
+
+    /** Read the 2-bit entry of position (hi, lo) from a table starting at base */
+    private static int get(ByteBuffer table, int base, int hi, int lo) {
+        return (table.get(base + hi * ROW_BYTES + (lo >> 2)) >> ((lo & 3) << 1)) & 3;
+    }
+
+    /** Write an entry; rows are whole bytes, so threads writing different rows never share a byte */
+    private static void put(ByteBuffer table, int base, int hi, int lo, int value) {
+        int offset = base + hi * ROW_BYTES + (lo >> 2);
+        int shift = (lo & 3) << 1;
+        table.put(offset, (byte) ((table.get(offset) & ~(3 << shift)) | (value << shift)));
+    }
+
+    /** Backward induction over a table, resuming from its last complete level */
+    static final class Solver {
+        private final ByteBuffer table;
+        private final int threads;
+        private final PrintStream log;
+        /** hasLine[bits] is true if the 16-bit set of cells contains a winning line */
+        private final boolean[] hasLine = new boolean[1 << CELLS];
+
+        /** Constructor for a table with a header; progress goes to log unless it is null */
+        Solver(ByteBuffer table, int winLength, int threads, PrintStream log) {
+            this.table = table;
+            this.threads = Math.max(1, threads);
+            this.log = log;
+            List<Integer> lines = new ArrayList<>();
+            int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+            for (int row = 0; row < SIZE; ++row) {
+                for (int col = 0; col < SIZE; ++col) {
+                    for (int[] d : directions) {
+                        int endRow = row + d[0] * (winLength - 1), endCol = col + d[1] * (winLength - 1);
+                        if (endRow < SIZE && endCol >= 0 && endCol < SIZE) {
+                            int mask = 0;
+                            for (int i = 0; i < winLength; ++i) {
+                                mask |= 1 << ((row + d[0] * i) * SIZE + col + d[1] * i);
+                            }
+                            lines.add(mask);
+                        }
+                    }
+                }
+            }
+            for (int bits = 0; bits < hasLine.length; ++bits) {
+                for (int mask : lines) {
+                    if ((bits & mask) == mask) {
+                        hasLine[bits] = true;
+                        break;
+                    }
+                }
+            }
+        }
+
+        /** Solve every level below the last complete one, checkpointing after each */
+        void solve() {
+            ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+                Thread thread = new Thread(r, "Retrograde solver");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                for (int level = table.getInt(SOLVED_OFFSET) - 1; level >= 0; --level) {
+                    long start = System.nanoTime();
+                    AtomicInteger next = new AtomicInteger();
+                    int[] counts = new int[4];
+                    int solvingLevel = level;
+                    List<Future<int[]>> futures = new ArrayList<>();
+                    for (int i = 1; i < threads; ++i) {
+                        futures.add(executor.submit(() -> solveRows(solvingLevel, next)));
+                    }
+                    add(counts, solveRows(level, next)); // the caller works too
+                    for (Future<int[]> future : futures) {
+                        add(counts, future.get());
+                    }
+                    checkpoint(level);
+                    if (log != null) {
+                        log.printf("Level %2d: %,10d wins %,10d draws %,10d losses in %6.0f ms%n", level,
+                                counts[PerfectPlayTable.WIN], counts[PerfectPlayTable.DRAW],
+                                counts[PerfectPlayTable.LOSS], (System.nanoTime() - start) / 1e6);
+                    }
+                }
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Solver thread failed", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while solving", e);
+            } finally {
+                executor.shutdown();
+            }
+        }
+
+        /** Record level as solved, once everything written for it is on disk (for a file) */
+        private void checkpoint(int level) {
+            if (table instanceof MappedByteBuffer) {
+                ((MappedByteBuffer) table).force();
+            }
+            table.putInt(SOLVED_OFFSET, level);
+            if (table instanceof MappedByteBuffer) {
+                ((MappedByteBuffer) table).force();
+            }
+        }
+
+        private static void add(int[] total, int[] counts) {
+            for (int i = 0; i < total.length; ++i) {
+                total[i] += counts[i];
+            }
+        }
+
+        /** Solve the positions with level stones in the rows claimed from next; return counts by value */
+        private int[] solveRows(int level, AtomicInteger next) {
+            int[] counts = new int[4];
+            int crosses = (level + 1) / 2, noughts = level / 2;
+            boolean crossToMove = (level % 2 == 0);
+            int digit = crossToMove ? 1 : 2;
+            int start;
+            while ((start = next.getAndAdd(CHUNK)) < HALF) {
+                for (int hi = start; hi < Math.min(HALF, start + CHUNK); ++hi) {
+                    int loCrosses = crosses - Integer.bitCount(HALF_CROSSES[hi]);
+                    int loNoughts = noughts - Integer.bitCount(HALF_NOUGHTS[hi]);
+                    if (loCrosses < 0 || loNoughts < 0 || loCrosses + loNoughts > 8) {
+                        continue;
+                    }
+                    for (int lo : BY_COUNTS[loCrosses][loNoughts]) {
+                        int crossBits = HALF_CROSSES[lo] | HALF_CROSSES[hi] << 8;
+                        int noughtBits = HALF_NOUGHTS[lo] | HALF_NOUGHTS[hi] << 8;
+                        int value = value(hi, lo, crossToMove ? crossBits : noughtBits,
+                                crossToMove ? noughtBits : crossBits, level, digit);
+                        put(table, HEADER_BYTES, hi, lo, value);
+                        counts[value]++;
+                    }
+                }
+            }
+            return counts;
+        }
+
+        /** Value for the side to move (owning mover's cells) from the values of the next level */
+        private int value(int hi, int lo, int mover, int other, int level, int digit) {
+            if (hasLine[other]) {
+                // The last move won, unless the side to move had already won before it
+                return hasLine[mover] ? PerfectPlayTable.UNREACHABLE : PerfectPlayTable.LOSS;
+            } else if (hasLine[mover]) {
+                return PerfectPlayTable.UNREACHABLE;
+            } else if (level == CELLS) {
+                return PerfectPlayTable.DRAW;
+            }
+            int best = PerfectPlayTable.LOSS;
+            int empty = ~(mover | other) & ((1 << CELLS) - 1);
+            for (; empty != 0; empty &= empty - 1) {
+                int cell = Integer.numberOfTrailingZeros(empty);
+                int child = (cell < 8) ? get(table, HEADER_BYTES, hi, lo + digit * POW3[cell])
+                        : get(table, HEADER_BYTES, hi + digit * POW3[cell - 8], lo);
+                int valueForUs = PerfectPlayTable.LOSS + PerfectPlayTable.WIN - child; // opponent's loss is our win
+                if (valueForUs > best) {
+                    best = valueForUs;
+                    if (best == PerfectPlayTable.WIN) {
+                        break;
+                    }
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Build step: solve the 4x4 game for a win length and write its table file
+     * (default: src/data/ttt4x4k4.tbl), resuming if the file holds a partial solve.
+     *
+     * Usage: PerfectPlayTable4x4 [winLength] [file] [threads]
+     */
+    public static void main(String[] args) throws IOException {
+        int winLength = (args.length > 0) ? Integer.parseInt(args[0]) : SIZE;
+        if (winLength < 3 || winLength > SIZE) {
+            System.err.println("Win length must be 3 or 4");
+            return;
+        }
+        Path path = Paths.get((args.length > 1) ? args[1] : "src/" + resourceName(winLength));
+        int threads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // Check the size first: mapping READ_WRITE past the end would silently grow a wrong file
+            boolean fresh = channel.size() == 0;
+            if (!fresh && channel.size() != FILE_BYTES) {
+                System.err.println(path + " has " + channel.size() + " bytes, not the " + FILE_BYTES
+                        + " of a table; delete it to solve again");
+                return;
+            }
+            MappedByteBuffer table = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_BYTES);
+            if (fresh) {
+                newTable(table, winLength);
+            } else if (table.getInt(0) != MAGIC || table.getInt(4) != winLength) {
+                System.err.println(path + " is not a table for win length " + winLength + "; delete it to solve again");
+                return;
+            } else {
+                System.out.println("Resuming " + path + " below level " + table.getInt(SOLVED_OFFSET));
+            }
+            new Solver(table, winLength, threads, System.out).solve();
+            String[] names = {"unreachable", "a loss", "a draw", "a win"};
+            System.out.printf("Solved in %.1f s on %d threads, wrote %s; the empty board is %s for X%n",
+                    (System.nanoTime() - start) / 1e9, threads, path, names[get(table, HEADER_BYTES, 0, 0)]);
+        }
+    }
+}
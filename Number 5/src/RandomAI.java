@@ -0,0 +1,14 @@
+import java.util.Random;
+
+/**
+ * The RandomAI class picks a random empty cell ("Easy" difficulty), uniformly and in
+ * constant time from the board's empty-cell list.
+ */
+public class RandomAI implements AIPlayer {
+    private final Random rand = new Random();
+
+    @Override
+    public int selectMove(BitBoard board, Seed player, long deadline) {
+        return board.getEmptyCell(rand.nextInt(board.getEmptyCount()));
+    }
+}
@@ -1,6 +1,5 @@
 import java.awt.Image;
-import java.net.URL;
-import javax.swing.ImageIcon;
+import java.util.concurrent.CompletableFuture;
 /**
  * This enum is used by:
  * 1. Player: takes value of CROSS or NOUGHT
@@ -8,43 +7,45 @@ import javax.swing.ImageIcon;
  *
  * We also attach a display image icon (text or image) for the items.
  *   and define the related variable/constructor/getter.
- * To draw the image:
- *   g.drawImage(content.getImage(), x, y, width, height, null);
+ * The images are loaded and cached by AssetManager, not by this enum. To draw the image:
+ *   g.drawImage(content.getImage(size), x, y, null);
  *
  * Ideally, we should define two enums with inheritance, which is,
  *  however, not supported.
  */
 public enum Seed {   // to save as "Seed.java"
-    CROSS("X", "images/cross.jpeg"),   // displayName, imageFilename
+    CROSS("X", "images/Cross.jpeg"),   // displayName, imageFilename
     NOUGHT("O", "images/Bulat.jpeg"),
     NO_SEED(" ", null);
 
     // Private variables
-    private String displayName;
-    private Image img = null;
+    private final String displayName;
+    private final String imageFilename;
 
     // Constructor (must be private)
     private Seed(String name, String imageFilename) {
         this.displayName = name;
-
-        if (imageFilename != null) {
-            URL imgURL = getClass().getClassLoader().getResource(imageFilename);
-            ImageIcon icon = null;
-            if (imgURL != null) {
-                icon = new ImageIcon(imgURL);
-                //System.out.println(icon);  // debugging
-            } else {
-                System.err.println("Couldn't find file " + imageFilename);
-            }
-            img = icon.getImage();
-        }
+        this.imageFilename = imageFilename;
     }//bismillah bisa
 
     // Public getters
     public String getDisplayName() {
         return displayName;
     }
+    public String getImageFilename() {
+        return imageFilename;
+    }
+    /** Return the image (or a fallback glyph), or null for NO_SEED */
     public Image getImage() {
-        return img;
+        return (imageFilename == null) ? null : AssetManager.getImage(imageFilename, displayName);
+    }
+    /** Return the image scaled to size x size, or null for NO_SEED */
+    public Image getImage(int size) {
+        return (imageFilename == null) ? null : AssetManager.getImage(imageFilename, displayName, size);
+    }
+    /** Return the image scaled to size x size without waiting for it (null for NO_SEED) */
+    public CompletableFuture<Image> loadImage(int size) {
+        return (imageFilename == null) ? CompletableFuture.completedFuture(null)
+                : AssetManager.loadImage(imageFilename, displayName, size);
     }
 }
\ No newline at end of file
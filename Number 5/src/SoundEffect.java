@@ -1,5 +1,10 @@
 import java.io.IOException;
 import java.net.URL;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.Clip;
@@ -11,59 +16,159 @@ import javax.sound.sampled.UnsupportedAudioFileException;
  * 1. Define all your sound effect names and the associated wave file.
  * 2. To play a specific sound, simply invoke SoundEffect.SOUND_NAME.play().
  * 3. You might optionally invoke the static method SoundEffect.initGame() to pre-load all the
- *    sound files, so that the play is not paused while loading the file for the first time.
+ *    sound files in the background, so that the play is not paused while loading the file
+ *    for the first time.
  * 4. You can the static variable SoundEffect.volume to SoundEffect.Volume.MUTE
  *    to mute the sound.
  *
+ * All loading and playing happens on one audio thread: play() only queues a request and
+ * returns, so it never blocks the caller (e.g. the Swing event thread). Each file is
+ * decoded to PCM once, and each effect keeps a few clips open on that data, so the same
+ * effect played again while still sounding starts on a free clip instead of cutting
+ * the first one off. The delay from play() to the clip starting, and requests dropped
+ * because the queue was full, are recorded in Metrics.
+ *
  * For Eclipse, place the audio file under "src", which will be copied into "bin".
  */
 public enum SoundEffect {
-    EAT_FOOD("audio/Bulat.wav"),
-    EXPLODE("audio/Cross.wav"),
-    DIE("audio/Final.wav");
+    CROSS("audio/Cross.wav"),
+    NOUGHT("audio/bulat.wav"),
+    GAME_OVER("audio/Final.wav");
 
     /** Nested enumeration for specifying volume */
     public static enum Volume {
         MUTE, LOW, MEDIUM, HIGH
     }
 
-    public static Volume volume = Volume.LOW;
+    public static volatile Volume volume = Volume.LOW;
+
+    /** Clips kept open per effect, i.e. how many plays of one effect can overlap */
+    private static final int CLIPS_PER_EFFECT = 3;
+
+    /** Pending work for the audio thread; requests beyond its capacity are dropped */
+    private static final BlockingQueue<Runnable> requests = new ArrayBlockingQueue<>(32);
+
+    private static final LatencyHistogram LATENCY = Metrics.timer(Metrics.SOUND_LATENCY);
+    private static final LongAdder DROPPED = Metrics.counter(Metrics.SOUND_DROPPED);
+
+    static {
+        Thread audio = new Thread(SoundEffect::runAudio, "Sound");
+        audio.setDaemon(true);
+        audio.start();
+    }
+
+    private final String soundFileName;
 
-    /** Each sound effect has its own clip, loaded with its own sound file. */
-    private Clip clip;
+    // Touched only by the audio thread
+    private boolean loaded = false;
+    private Clip[] clips;
+    private int nextClip = 0;
 
-    /** Private Constructor to construct each element of the enum with its own sound file. */
+    /** Private Constructor; the sound file is only loaded on the audio thread. */
     private SoundEffect(String soundFileName) {
-        try {
-            // Use URL (instead of File) to read from disk and JAR.
-            URL url = this.getClass().getClassLoader().getResource(soundFileName);
-            // Set up an audio input stream piped from the sound file.
-            AudioInputStream audioInputStream = AudioSystem.getAudioInputStream(url);
-            // Get a clip resource.
-            clip = AudioSystem.getClip();
-            // Open audio clip and load samples from the audio input stream.
-            clip.open(audioInputStream);
-        } catch (UnsupportedAudioFileException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
-        } catch (LineUnavailableException e) {
-            e.printStackTrace();
-        }
+        this.soundFileName = soundFileName;
     }
 
-    /** Play or Re-play the sound effect from the beginning, by rewinding. */
+    /** Play the sound effect from the beginning; returns at once. */
     public void play() {
         if (volume != Volume.MUTE) {
-            if (clip.isRunning())
-                clip.stop();   // Stop the player if it is still running
-            clip.setFramePosition(0); // rewind to the beginning
-            clip.start();     // Start playing
+            long requestedAt = System.nanoTime();
+            if (!requests.offer(() -> start(requestedAt))) {
+                DROPPED.increment();
+            }
+        }
+    }
+
+    /**
+     * Optional static method to pre-load all the sound files in the background; the
+     * returned future completes once they are loaded.
+     */
+    static CompletableFuture<Void> initGame() {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Runnable preload = () -> {
+            for (SoundEffect effect : values()) {
+                if (!effect.loaded) {
+                    effect.load();
+                }
+            }
+            done.complete(null);
+        };
+        if (!requests.offer(preload)) {
+            done.complete(null); // the queue is full; each sound loads when first played
         }
+        return done;
     }
 
-    /** Optional static method to pre-load all the sound files. */
-    static void initGame() {
-        values(); // calls the constructor for all the elements
+    private static void runAudio() {
+        while (true) {
+            try {
+                requests.take().run();
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                e.printStackTrace(); // a broken sound must not stop the others
+            }
+        }
+    }
+
+    /** Decode the file to PCM once and open the clips on it; a missing sound is reported once. */
+    private void load() {
+        loaded = true;
+        // Use URL (instead of File) to read from disk and JAR.
+        URL url = getClass().getClassLoader().getResource(soundFileName);
+        if (url == null) {
+            System.err.println("Couldn't find file " + soundFileName);
+            return;
+        }
+        Clip[] opened = new Clip[CLIPS_PER_EFFECT];
+        try (AudioInputStream in = AudioSystem.getAudioInputStream(url)) {
+            AudioFormat format = in.getFormat();
+            byte[] pcm = in.readAllBytes();
+            for (int i = 0; i < opened.length; ++i) {
+                opened[i] = AudioSystem.getClip();
+                opened[i].open(format, pcm, 0, pcm.length);
+            }
+            clips = opened;
+        } catch (UnsupportedAudioFileException | IOException | LineUnavailableException | IllegalArgumentException e) {
+            System.err.println("Couldn't open sound " + soundFileName + ": " + e.getMessage());
+            for (Clip clip : opened) {
+                if (clip != null) {
+                    clip.close();
+                }
+            }
+        }
+    }
+
+    /** Start an idle clip, or restart the least recently started one if all are busy; requestedAt is when play() was called. */
+    private void start(long requestedAt) {
+        Metrics.SoundEvent event = new Metrics.SoundEvent();
+        event.begin();
+        if (!loaded) {
+            load();
+        }
+        if (clips == null || volume == Volume.MUTE) {
+            return;
+        }
+        Clip clip = clips[nextClip];
+        for (int i = 0; i < clips.length; ++i) {
+            Clip candidate = clips[(nextClip + i) % clips.length];
+            if (!candidate.isRunning()) {
+                clip = candidate;
+                nextClip = (nextClip + i) % clips.length;
+                break;
+            }
+        }
+        nextClip = (nextClip + 1) % clips.length;
+
+        if (clip.isRunning())
+            clip.stop();   // Stop the player if it is still running
+        clip.setFramePosition(0); // rewind to the beginning
+        clip.start();     // Start playing
+        LATENCY.record(System.nanoTime() - requestedAt);
+        event.end();
+        if (event.shouldCommit()) {
+            event.effect = name();
+            event.commit();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,152 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import javax.imageio.ImageIO;
+
+/**
+ * The SpectatorClient class is a headless viewer of a SpectatorServer feed. It rebuilds
+ * every match from the snapshot and deltas it receives, and after each update prints the
+ * board as text, or with an image file given, also renders it with Board into that PNG
+ * (replaced atomically, so a display process can simply reload it).
+ *
+ * Usage: SpectatorClient [port] [imageFile]
+ */
+public class SpectatorClient {
+    private final Map<Integer, SpectatorServer.MatchView> matches = new HashMap<>();
+    private final PrintStream out;
+    private final Path imageFile;
+
+    // Board rendering of the last match updated, rebuilt when the board shape changes
+    private BitBoard engine;
+    private Board board;
+
+    public SpectatorClient(PrintStream out, Path imageFile) {
+        this.out = out;
+        this.imageFile = imageFile;
+    }
+
+    /** Read frames from the channel until the server closes it */
+    public void follow(SocketChannel channel) throws IOException {
+        ByteBuffer in = ByteBuffer.allocate(SpectatorServer.CLIENT_BUFFER_BYTES);
+        while (channel.read(in) >= 0) {
+            in.flip();
+            while (true) {
+                in.mark();
+                int length = readLength(in);
+                if (length < 0 || in.remaining() < length) {
+                    in.reset(); // wait for the rest of the frame
+                    break;
+                }
+                ByteBuffer frame = in.slice(in.position(), length);
+                in.position(in.position() + length);
+                apply(frame);
+            }
+            in.compact();
+        }
+    }
+
+    /** Read the varint frame length, or return -1 if it has not fully arrived */
+    private static int readLength(ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        while (in.hasRemaining()) {
+            int b = in.get() & 0xFF;
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+        return -1;
+    }
+
+    private void apply(ByteBuffer frame) throws IOException {
+        int type = frame.get(0);
+        frame.position(1);
+        int id = SpectatorServer.readVarint(frame);
+        frame.position(0);
+        SpectatorServer.MatchView match = (type == SpectatorServer.SNAPSHOT)
+                ? new SpectatorServer.MatchView(id) : matches.get(id);
+        if (match == null) {
+            return; // a match we never had a snapshot of
+        }
+        match.apply(frame);
+        if (match.ended) {
+            matches.remove(id);
+            out.println("Match " + id + " ended");
+            return;
+        }
+        matches.put(id, match);
+        show(match);
+    }
+
+    private void show(SpectatorServer.MatchView match) throws IOException {
+        if (engine == null || engine.getRows() != match.rows || engine.getCols() != match.cols
+                || engine.getWinLength() != match.winLength) {
+            engine = new BitBoard(match.rows, match.cols, match.winLength);
+            board = new Board(engine);
+            if (imageFile != null) {
+                board.loadSprites();
+            }
+        }
+        engine.reset();
+        Seed player = Seed.CROSS;
+        for (int i = 0; i < match.moveCount; ++i) {
+            engine.play(player, match.moves[i]);
+            player = (player == Seed.CROSS) ? Seed.NOUGHT : Seed.CROSS;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("Match ").append(match.id).append(": ").append(match.playerXName).append(' ')
+                .append(match.scoreX).append(" - ").append(match.scoreO).append(' ').append(match.playerOName)
+                .append("   (seri ").append(match.draws).append(')');
+        if (match.roundOver) {
+            sb.append("   ").append(match.lastResult == State.CROSS_WON ? match.playerXName + " menang"
+                    : match.lastResult == State.NOUGHT_WON ? match.playerOName + " menang" : "Seri");
+        }
+        sb.append('\n');
+        for (int row = 0; row < match.rows; ++row) {
+            for (int col = 0; col < match.cols; ++col) {
+                Seed seed = engine.get(row, col);
+                sb.append(seed == Seed.NO_SEED ? '.' : seed.getDisplayName().charAt(0));
+            }
+            sb.append('\n');
+        }
+        out.print(sb);
+
+        if (imageFile != null) {
+            BufferedImage image = new BufferedImage(board.getCanvasWidth(), board.getCanvasHeight(),
+                    BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = image.createGraphics();
+            g.setColor(GameMain.COLOR_BG);
+            g.fillRect(0, 0, image.getWidth(), image.getHeight());
+            board.paintComponent(g);
+            g.dispose();
+            Path temp = imageFile.resolveSibling(imageFile.getFileName() + ".tmp");
+            ImageIO.write(image, "png", temp.toFile());
+            Files.move(temp, imageFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = (args.length > 0) ? Integer.parseInt(args[0]) : SpectatorServer.DEFAULT_PORT;
+        Path imageFile = (args.length > 1) ? Paths.get(args[1]) : null;
+        System.setProperty("java.awt.headless", "true");
+        try (SocketChannel channel = SocketChannel.open(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port))) {
+            new SpectatorClient(System.out, imageFile).follow(channel);
+        }
+        System.out.println("Feed closed");
+    }
+}
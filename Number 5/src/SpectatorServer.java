@@ -0,0 +1,569 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The SpectatorServer class streams the matches it watches to any number of read-only
+ * viewers (see SpectatorClient) over local TCP.
+ *
+ * A viewer gets one snapshot of every match when it connects, and from then on only
+ * deltas: a move is a frame of about 4 bytes, whatever the board size. A match sends a
+ * fresh snapshot (a keyframe) whenever a new round starts. Frames are
+ *   length, type, match id, payload        (unsigned varints, see GameRecordWriter)
+ * with the payloads
+ *   SNAPSHOT  rows, cols, winLength, names, scoreX, scoreO, draws, roundOver, moves
+ *   MOVE      cell index                   UNDO   (none)
+ *   ROUND     result State ordinal         SCORE  scoreX, scoreO, draws
+ *   END       (none; the match is no longer watched)
+ *
+ * One selector thread serves every viewer without blocking. Each viewer has a bounded
+ * send buffer (CLIENT_BUFFER_BYTES); a viewer too slow to keep it from filling is
+ * disconnected rather than holding up the match or the other viewers.
+ *
+ * The server follows a session through its events: watch() it from the thread that
+ * drives the session. Events are only encoded there, into one inbox buffer shared by
+ * all sessions, so an event allocates nothing; the selector thread swaps the inbox for
+ * a spare one and does all the work for viewers and all the I/O.
+ */
+public class SpectatorServer implements GameListener, Closeable {
+    public static final int DEFAULT_PORT = 5556;
+    /** Unsent bytes a viewer may fall behind by before it is dropped */
+    public static final int CLIENT_BUFFER_BYTES = 1 << 16;
+    /** Initial size of the inbox; it grows if the selector thread falls behind */
+    private static final int INBOX_BYTES = 1 << 16;
+
+    static final int SNAPSHOT = 1, MOVE = 2, UNDO = 3, ROUND = 4, SCORE = 5, END = 6;
+    private static final State[] STATES = State.values();
+
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final Thread loop;
+    private volatile boolean running = true;
+
+    /**
+     * Length-prefixed frames from the sessions' threads, waiting for the selector thread,
+     * and the frame being encoded; both are reused, and guarded by inboxLock.
+     */
+    private final ReentrantLock inboxLock = new ReentrantLock();
+    private ByteBuffer inbox = ByteBuffer.allocate(INBOX_BYTES);
+    private final FrameBuffer frame = new FrameBuffer();
+    /** The inbox being published by the selector thread */
+    private ByteBuffer spare = ByteBuffer.allocate(INBOX_BYTES);
+    private final Map<GameSession, Integer> ids = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+
+    // Touched only by the selector thread
+    private final Map<Integer, MatchView> matches = new HashMap<>();
+    private final List<Viewer> viewers = new ArrayList<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(256);
+    private volatile int viewerCount;
+
+    private final LongAdder dropped = Metrics.counter("spectator.dropped");
+    private final LongAdder bytesSent = Metrics.counter("spectator.bytes");
+
+    /** Start listening on the given local port */
+    public SpectatorServer(int port) throws IOException {
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 128);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        loop = new Thread(this::run, "Spectators");
+        loop.setDaemon(true);
+        loop.start();
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    /** Number of viewers connected */
+    public int getViewerCount() {
+        return viewerCount;
+    }
+
+    /** Stream session to the viewers from now on; call on the thread driving it */
+    public void watch(GameSession session) {
+        int id = nextId.getAndIncrement();
+        ids.put(session, id);
+        sendSnapshot(session, id);
+        session.getEvents().subscribe(this);
+    }
+
+    /** Stop streaming session, telling the viewers it has ended */
+    public void unwatch(GameSession session) {
+        session.getEvents().unsubscribe(this);
+        Integer id = ids.remove(session);
+        if (id != null) {
+            send(END, id);
+        }
+    }
+
+    @Override
+    public void movePlayed(GameSession session, Seed player, int row, int col, State state) {
+        Integer id = ids.get(session);
+        if (id != null) {
+            send(MOVE, id, row * session.getBoard().getCols() + col);
+        }
+    }
+
+    @Override
+    public void moveUndone(GameSession session, Seed player, int row, int col) {
+        Integer id = ids.get(session);
+        if (id != null) {
+            send(UNDO, id);
+        }
+    }
+
+    @Override
+    public void roundEnded(GameSession session, State result) {
+        Integer id = ids.get(session);
+        if (id != null) {
+            send(ROUND, id, result.ordinal());
+        }
+    }
+
+    @Override
+    public void scoreChanged(GameSession session, int scoreX, int scoreO, int drawScore) {
+        Integer id = ids.get(session);
+        if (id != null) {
+            send(SCORE, id, scoreX, scoreO, drawScore);
+        }
+    }
+
+    /** A new round: send a keyframe, so viewers never have to infer the reset */
+    @Override
+    public void roundStarted(GameSession session) {
+        Integer id = ids.get(session);
+        if (id != null) {
+            sendSnapshot(session, id);
+        }
+    }
+
+    private void send(int type, int id) {
+        send(type, id, 0, 0, 0, 0);
+    }
+
+    private void send(int type, int id, int value) {
+        send(type, id, 1, value, 0, 0);
+    }
+
+    private void send(int type, int id, int a, int b, int c) {
+        send(type, id, 3, a, b, c);
+    }
+
+    /** Queue a frame of type for match id with the first count of the payload values a, b, c */
+    private void send(int type, int id, int count, int a, int b, int c) {
+        inboxLock.lock();
+        try {
+            frame.reset();
+            frame.write(type);
+            GameRecordWriter.writeVarint(frame, id);
+            if (count > 0) GameRecordWriter.writeVarint(frame, a);
+            if (count > 1) GameRecordWriter.writeVarint(frame, b);
+            if (count > 2) GameRecordWriter.writeVarint(frame, c);
+            enqueueFrame();
+        } finally {
+            inboxLock.unlock();
+        }
+        selector.wakeup();
+    }
+
+    /** Queue a snapshot of session as match id */
+    private void sendSnapshot(GameSession session, int id) {
+        MatchView view = new MatchView(id);
+        view.load(session);
+        inboxLock.lock();
+        try {
+            frame.reset();
+            view.writeSnapshot(frame);
+            enqueueFrame();
+        } finally {
+            inboxLock.unlock();
+        }
+        selector.wakeup();
+    }
+
+    /** Append frame to the inbox with its length prefix, growing the inbox if it is full; call under inboxLock */
+    private void enqueueFrame() {
+        int needed = frame.size() + 5;
+        if (inbox.remaining() < needed) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * inbox.capacity(), inbox.position() + needed));
+            inbox.flip();
+            larger.put(inbox);
+            inbox = larger;
+        }
+        int length = frame.size();
+        while ((length & ~0x7F) != 0) {
+            inbox.put((byte) ((length & 0x7F) | 0x80));
+            length >>>= 7;
+        }
+        inbox.put((byte) length);
+        frame.copyTo(inbox);
+    }
+
+    /** A ByteArrayOutputStream that copies out without allocating */
+    private static final class FrameBuffer extends ByteArrayOutputStream {
+        void copyTo(ByteBuffer out) {
+            out.put(buf, 0, count);
+        }
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                publishInbox();
+                flushAll(); // one write per viewer for everything queued since the last round
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Viewer viewer = (Viewer) key.attachment();
+                        if (key.isReadable()) {
+                            viewer.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            viewer.flush();
+                        }
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) {
+                System.err.println("Spectator server stopped: " + e);
+            }
+        }
+    }
+
+    /** Take the frames queued since the last call, swapping in the spare inbox, and publish each */
+    private void publishInbox() {
+        ByteBuffer frames;
+        inboxLock.lock();
+        try {
+            frames = inbox;
+            inbox = spare;
+        } finally {
+            inboxLock.unlock();
+        }
+        frames.flip();
+        int end = frames.limit();
+        while (frames.position() < end) {
+            int start = frames.position();
+            int length = readVarint(frames);
+            int bodyStart = frames.position();
+            publish(frames, start, bodyStart, bodyStart + length);
+            frames.limit(end).position(bodyStart + length);
+        }
+        frames.clear();
+        spare = frames;
+    }
+
+    /**
+     * Apply the frame at frames[bodyStart, bodyEnd) to our copy of its match, then pass
+     * it on, with its length prefix at start, to every viewer.
+     */
+    private void publish(ByteBuffer frames, int start, int bodyStart, int bodyEnd) {
+        frames.limit(bodyEnd).position(bodyStart);
+        int type = frames.get();
+        int id = readVarint(frames);
+        if (type == SNAPSHOT) {
+            matches.put(id, new MatchView(id));
+        }
+        MatchView match = matches.get(id);
+        if (match != null) {
+            frames.position(bodyStart);
+            match.apply(frames);
+            if (type == END) {
+                matches.remove(id);
+            }
+        }
+        for (int i = viewers.size() - 1; i >= 0; --i) {
+            frames.position(start);
+            viewers.get(i).offer(frames);
+        }
+    }
+
+    private void flushAll() {
+        for (int i = viewers.size() - 1; i >= 0; --i) {
+            Viewer viewer = viewers.get(i);
+            if (viewer.out.position() > 0) {
+                viewer.flush();
+            }
+        }
+    }
+
+    private static byte[] withLength(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length + 3);
+        GameRecordWriter.writeVarint(out, body.length);
+        out.write(body, 0, body.length);
+        return out.toByteArray();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        // Keep the kernel from hiding a stalled viewer behind megabytes of its own buffering
+        channel.setOption(StandardSocketOptions.SO_SNDBUF, CLIENT_BUFFER_BYTES);
+        ByteArrayOutputStream snapshots = new ByteArrayOutputStream();
+        for (MatchView match : matches.values()) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            match.writeSnapshot(body);
+            snapshots.writeBytes(withLength(body.toByteArray()));
+        }
+        // Room for the catch-up on top of the usual allowance, however many matches are live
+        Viewer viewer = new Viewer(channel, snapshots.size() + CLIENT_BUFFER_BYTES);
+        viewer.key = channel.register(selector, SelectionKey.OP_READ, viewer);
+        viewers.add(viewer);
+        viewerCount = viewers.size();
+        viewer.offer(ByteBuffer.wrap(snapshots.toByteArray()));
+        viewer.flush();
+    }
+
+    /** One connected viewer and the bytes not yet sent to it */
+    private final class Viewer {
+        private final SocketChannel channel;
+        private final ByteBuffer out;
+        SelectionKey key;
+        private boolean closed = false;
+
+        Viewer(SocketChannel channel, int capacity) {
+            this.channel = channel;
+            out = ByteBuffer.allocate(capacity);
+        }
+
+        /** Queue the remaining bytes of frame (sent by the next flush), dropping the viewer if its buffer cannot take them */
+        void offer(ByteBuffer frame) {
+            if (closed) {
+                return;
+            }
+            if (out.remaining() < frame.remaining()) {
+                dropped.increment();
+                close();
+                return;
+            }
+            out.put(frame);
+        }
+
+        /** Write as much as the socket takes now; wait for OP_WRITE for the rest */
+        void flush() {
+            if (closed) {
+                return;
+            }
+            try {
+                out.flip();
+                bytesSent.add(channel.write(out));
+                boolean more = out.hasRemaining();
+                out.compact();
+                key.interestOps(more ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        /** Viewers send nothing; reading only notices when they go away */
+        void read() {
+            try {
+                readBuffer.clear();
+                if (channel.read(readBuffer) < 0) {
+                    close();
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // already gone
+            }
+            viewers.remove(this);
+            viewerCount = viewers.size();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            loop.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Viewer viewer : new ArrayList<>(viewers)) {
+            viewer.close();
+        }
+        selector.close();
+        server.close();
+    }
+
+    /** Decode an unsigned varint */
+    static int readVarint(ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.get() & 0xFF;
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * The state of one match as a viewer knows it, kept up to date by applying frames.
+     * The server keeps one per match too, to send the snapshot to a new viewer.
+     */
+    static final class MatchView {
+        final int id;
+        int rows, cols, winLength;
+        String playerXName = "", playerOName = "";
+        int scoreX, scoreO, draws;
+        /** Set by ROUND; the next MOVE starts a new round on an empty board */
+        boolean roundOver;
+        State lastResult = State.PLAYING;
+        int[] moves = new int[0];
+        int moveCount;
+        boolean ended;
+
+        MatchView(int id) {
+            this.id = id;
+        }
+
+        /** Take the current state of session, on the thread driving it */
+        void load(GameSession session) {
+            BitBoard board = session.getBoard();
+            rows = board.getRows();
+            cols = board.getCols();
+            winLength = board.getWinLength();
+            playerXName = session.getPlayerXName();
+            playerOName = session.getPlayerOName();
+            scoreX = session.getScoreX();
+            scoreO = session.getScoreO();
+            draws = session.getDrawScore();
+            roundOver = session.isRoundOver();
+            lastResult = session.getCurrentState();
+            moves = new int[rows * cols];
+            moveCount = session.getMoveCount();
+            for (int i = 0; i < moveCount; ++i) {
+                moves[i] = session.getMove(i);
+            }
+        }
+
+        void writeSnapshot(ByteArrayOutputStream body) {
+            body.write(SNAPSHOT);
+            GameRecordWriter.writeVarint(body, id);
+            GameRecordWriter.writeVarint(body, rows);
+            GameRecordWriter.writeVarint(body, cols);
+            GameRecordWriter.writeVarint(body, winLength);
+            writeString(body, playerXName);
+            writeString(body, playerOName);
+            GameRecordWriter.writeVarint(body, scoreX);
+            GameRecordWriter.writeVarint(body, scoreO);
+            GameRecordWriter.writeVarint(body, draws);
+            body.write(roundOver ? lastResult.ordinal() : State.PLAYING.ordinal());
+            GameRecordWriter.writeVarint(body, moveCount);
+            for (int i = 0; i < moveCount; ++i) {
+                GameRecordWriter.writeVarint(body, moves[i]);
+            }
+        }
+
+        /** Apply one frame body (type, match id, payload) for this match */
+        void apply(ByteBuffer in) {
+            int type = in.get();
+            readVarint(in); // match id
+            switch (type) {
+                case SNAPSHOT:
+                    rows = readVarint(in);
+                    cols = readVarint(in);
+                    winLength = readVarint(in);
+                    playerXName = readString(in);
+                    playerOName = readString(in);
+                    scoreX = readVarint(in);
+                    scoreO = readVarint(in);
+                    draws = readVarint(in);
+                    lastResult = STATES[in.get()];
+                    roundOver = lastResult != State.PLAYING;
+                    moves = new int[rows * cols];
+                    moveCount = readVarint(in);
+                    for (int i = 0; i < moveCount; ++i) {
+                        moves[i] = readVarint(in);
+                    }
+                    break;
+                case MOVE:
+                    if (roundOver) {
+                        roundOver = false;
+                        moveCount = 0;
+                        lastResult = State.PLAYING;
+                    }
+                    moves[moveCount++] = readVarint(in);
+                    break;
+                case UNDO:
+                    moveCount--;
+                    break;
+                case ROUND:
+                    lastResult = STATES[readVarint(in)];
+                    roundOver = true;
+                    break;
+                case SCORE:
+                    scoreX = readVarint(in);
+                    scoreO = readVarint(in);
+                    draws = readVarint(in);
+                    break;
+                case END:
+                    ended = true;
+                    break;
+                default:
+                    break; // a newer frame type; its length lets the reader skip it
+            }
+        }
+
+        private static void writeString(ByteArrayOutputStream out, String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            GameRecordWriter.writeVarint(out, bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+
+        private static String readString(ByteBuffer in) {
+            byte[] bytes = new byte[readVarint(in)];
+            in.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
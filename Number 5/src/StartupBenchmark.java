@@ -0,0 +1,93 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * The StartupBenchmark class measures the cold start of GameMain: each run launches a
+ * fresh JVM with -Dtictactoe.startup.exit=true, which prints the time from launch to the
+ * first interactive frame and exits. Runs are made without and with an AppCDS archive of
+ * the classes used at startup, and min/median/max are reported for both. The runs keep
+ * their game log and statistics in a temporary directory (-Dtictactoe.data.dir), so the
+ * player's own files are left alone.
+ *
+ * If the archive does not exist yet, a training run creates it first
+ * (-XX:ArchiveClassesAtExit). The archive is tied to the JDK build and classpath, so
+ * it is generated on the kiosk rather than committed. Kiosks then launch with
+ *   java -XX:SharedArchiveFile=tictactoe.jsa -cp ... GameMain
+ * or, on JDK 19 and later, with -XX:+AutoCreateSharedArchive added, which creates (and
+ * after a JDK update recreates) the archive by itself on the first launch.
+ *
+ * Needs a display. Usage: StartupBenchmark [runs] [archive]
+ */
+public class StartupBenchmark {
+    public static final String DEFAULT_ARCHIVE = "tictactoe.jsa";
+    private static final String FIRST_FRAME = "First frame in ";
+    private static final long RUN_TIMEOUT_SECONDS = 60;
+    private static Path dataDirectory;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int runs = (args.length > 0) ? Integer.parseInt(args[0]) : 5;
+        Path archive = Paths.get((args.length > 1) ? args[1] : DEFAULT_ARCHIVE);
+
+        dataDirectory = Files.createTempDirectory("tictactoe-startup");
+        try {
+            if (!Files.exists(archive)) {
+                System.out.println("Training run, writing " + archive);
+                launch("-XX:ArchiveClassesAtExit=" + archive);
+            }
+            System.out.printf("%-10s %6s %12s %12s %12s%n", "Archive", "runs", "min ms", "median ms", "max ms");
+            report("none", runs, "-Xshare:auto");
+            report("AppCDS", runs, "-XX:SharedArchiveFile=" + archive);
+        } finally {
+            try (Stream<Path> files = Files.walk(dataDirectory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private static void report(String label, int runs, String option) throws IOException, InterruptedException {
+        long[] millis = new long[runs];
+        for (int i = 0; i < runs; ++i) {
+            millis[i] = launch(option);
+        }
+        Arrays.sort(millis);
+        System.out.printf("%-10s %6d %12d %12d %12d%n", label, runs, millis[0], millis[runs / 2], millis[runs - 1]);
+    }
+
+    /** Start GameMain in a new JVM with the given option and return its time to the first frame */
+    private static long launch(String option) throws IOException, InterruptedException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> command = new ArrayList<>(List.of(java, option, "-Dtictactoe.startup.exit=true",
+                "-Dtictactoe.data.dir=" + dataDirectory, "-cp", System.getProperty("java.class.path"), "GameMain"));
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        long millis = -1;
+        try (BufferedReader out = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = out.readLine()) != null) {
+                if (line.startsWith(FIRST_FRAME)) {
+                    millis = Long.parseLong(line.substring(FIRST_FRAME.length(), line.indexOf(" ms")));
+                }
+            }
+        }
+        if (!process.waitFor(RUN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+        }
+        if (millis < 0) {
+            throw new IllegalStateException("GameMain did not report its first frame (is a display available?)");
+        }
+        return millis;
+    }
+}
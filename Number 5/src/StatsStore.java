@@ -0,0 +1,300 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The StatsStore class keeps per-player statistics (wins, losses, draws, streaks and
+ * game length) across runs, in a small text file with one line per player.
+ *
+ * recordGame() only updates the statistics in memory; the file is rewritten behind it
+ * by a background thread, batching every game finished since the last write, at most
+ * every FLUSH_INTERVAL_MS or as soon as BATCH_SIZE games are pending. A finished game
+ * therefore never waits on the disk. The file is replaced atomically, so a crash
+ * loses at most the last batch; close() waits for the background writer and writes
+ * what is left.
+ *
+ * Every snapshot taken for a write gets the next version number, and snapshots are
+ * written one at a time under writeLock, skipping any older than the last one
+ * written, so the file never goes back to older statistics.
+ *
+ * Subscribed to a GameSession's events, it counts every round the session finishes.
+ * All methods are thread-safe, so one store can follow many sessions.
+ */
+public class StatsStore implements Closeable, GameListener {
+    private static final String HEADER = "# player\twins\tlosses\tdraws\tstreak\tbestStreak\tmoves";
+    /** Longest time a finished game stays unwritten */
+    public static final long FLUSH_INTERVAL_MS = 2000;
+    /** Pending games that trigger a write without waiting for the interval */
+    public static final int BATCH_SIZE = 64;
+    /** Longest time close() waits for a write in progress */
+    private static final long CLOSE_TIMEOUT_MS = 10_000;
+
+    /** Statistics of one player; a copy when returned by the store */
+    public static final class PlayerStats {
+        private final String name;
+        private int wins, losses, draws;
+        /** Positive: consecutive wins; negative: consecutive losses */
+        private int streak;
+        private int bestStreak;
+        private long moves;
+
+        PlayerStats(String name) {
+            this.name = name;
+        }
+
+        PlayerStats(PlayerStats other) {
+            this.name = other.name;
+            this.wins = other.wins;
+            this.losses = other.losses;
+            this.draws = other.draws;
+            this.streak = other.streak;
+            this.bestStreak = other.bestStreak;
+            this.moves = other.moves;
+        }
+
+        private void add(int outcome, int gameMoves) {
+            if (outcome > 0) {
+                wins++;
+                streak = Math.max(streak, 0) + 1;
+                bestStreak = Math.max(bestStreak, streak);
+            } else if (outcome < 0) {
+                losses++;
+                streak = Math.min(streak, 0) - 1;
+            } else {
+                draws++;
+                streak = 0;
+            }
+            moves += gameMoves;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getWins() {
+            return wins;
+        }
+
+        public int getLosses() {
+            return losses;
+        }
+
+        public int getDraws() {
+            return draws;
+        }
+
+        public int getGames() {
+            return wins + losses + draws;
+        }
+
+        /** Current streak: positive for consecutive wins, negative for consecutive losses */
+        public int getStreak() {
+            return streak;
+        }
+
+        /** Longest run of consecutive wins */
+        public int getBestStreak() {
+            return bestStreak;
+        }
+
+        /** Mean number of moves (by both players) per game */
+        public double getAverageGameLength() {
+            return (getGames() == 0) ? 0 : (double) moves / getGames();
+        }
+
+        /** Points per game, counting a win as 1 and a draw as 1/2 */
+        public double getScore() {
+            return (getGames() == 0) ? 0 : (wins + draws / 2.0) / getGames();
+        }
+    }
+
+    private final Path file;
+    private final Map<String, PlayerStats> players = new HashMap<>();
+    private int pending = 0;
+    private boolean flushScheduled = false;
+    /** Version of the last snapshot taken, guarded by this */
+    private long version = 0;
+    /** Version of the snapshot in the file, guarded by writeLock */
+    private long writtenVersion = 0;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ScheduledThreadPoolExecutor writer = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread thread = new Thread(r, "Stats writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Open the store kept in file, loading the statistics saved there (if any) */
+    public StatsStore(Path file) throws IOException {
+        this.file = file;
+        writer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false); // close() flushes instead
+        if (Files.exists(file)) {
+            load();
+        }
+    }
+
+    private void load() throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\t");
+                try {
+                    PlayerStats stats = new PlayerStats(fields[0]);
+                    stats.wins = Integer.parseInt(fields[1]);
+                    stats.losses = Integer.parseInt(fields[2]);
+                    stats.draws = Integer.parseInt(fields[3]);
+                    stats.streak = Integer.parseInt(fields[4]);
+                    stats.bestStreak = Integer.parseInt(fields[5]);
+                    stats.moves = Long.parseLong(fields[6]);
+                    players.put(stats.name, stats);
+                } catch (RuntimeException e) {
+                    System.err.println("Skipping bad line in " + file + ": " + line);
+                }
+            }
+        }
+    }
+
+    /**
+     * Count one finished game (round) between the two players with its final state and
+     * number of moves. Returns at once; the file is written in the background.
+     */
+    public void recordGame(String playerXName, String playerOName, State result, int moves) {
+        int outcomeX = (result == State.CROSS_WON) ? 1 : (result == State.NOUGHT_WON) ? -1 : 0;
+        synchronized (this) {
+            players.computeIfAbsent(clean(playerXName), PlayerStats::new).add(outcomeX, moves);
+            players.computeIfAbsent(clean(playerOName), PlayerStats::new).add(-outcomeX, moves);
+            pending++;
+            try {
+                if (pending >= BATCH_SIZE) {
+                    writer.execute(this::flushQuietly);
+                } else if (!flushScheduled) {
+                    flushScheduled = true;
+                    writer.schedule(this::flushQuietly, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                }
+            } catch (RejectedExecutionException e) {
+                // closed; the game is counted in memory only
+            }
+        }
+    }
+
+    @Override
+    public void roundEnded(GameSession session, State result) {
+        recordGame(session.getPlayerXName(), session.getPlayerOName(), result, session.getMoveCount());
+    }
+
+    /** Names are stored one per line, tab-separated */
+    private static String clean(String name) {
+        return name.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    /** Return a copy of the player's statistics, or null for an unknown player */
+    public synchronized PlayerStats getStats(String name) {
+        PlayerStats stats = players.get(clean(name));
+        return (stats == null) ? null : new PlayerStats(stats);
+    }
+
+    /** Return the top players by score (then by wins), at most limit of them */
+    public List<PlayerStats> getLeaderboard(int limit) {
+        List<PlayerStats> all = new ArrayList<>();
+        synchronized (this) {
+            for (PlayerStats stats : players.values()) {
+                all.add(new PlayerStats(stats));
+            }
+        }
+        all.sort(Comparator.comparingDouble(PlayerStats::getScore).reversed()
+                .thenComparing(Comparator.comparingInt(PlayerStats::getWins).reversed())
+                .thenComparing(PlayerStats::getName));
+        return all.subList(0, Math.min(limit, all.size()));
+    }
+
+    /** Write every pending game to the file now */
+    public void flush() throws IOException {
+        List<PlayerStats> snapshot = new ArrayList<>();
+        long snapshotVersion;
+        synchronized (this) {
+            if (pending == 0) {
+                flushScheduled = false;
+                return;
+            }
+            for (PlayerStats stats : players.values()) {
+                snapshot.add(new PlayerStats(stats));
+            }
+            snapshotVersion = ++version;
+            pending = 0;
+            flushScheduled = false;
+        }
+        writeLock.lock(); // one writer at a time, outside the statistics lock
+        try {
+            if (snapshotVersion < writtenVersion) {
+                return; // a newer snapshot is already in the file
+            }
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                out.write(HEADER);
+                out.newLine();
+                for (PlayerStats s : snapshot) {
+                    out.write(s.name + '\t' + s.wins + '\t' + s.losses + '\t' + s.draws + '\t'
+                            + s.streak + '\t' + s.bestStreak + '\t' + s.moves);
+                    out.newLine();
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            writtenVersion = snapshotVersion;
+        } catch (IOException e) {
+            synchronized (this) {
+                pending++; // not saved; keep it for the next write
+            }
+            throw e;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            System.err.println("Couldn't save player statistics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stop the background writer, wait for a write it has started (it may hold the
+     * last batch) and write the games still pending.
+     */
+    @Override
+    public void close() throws IOException {
+        writer.shutdown();
+        boolean interrupted = false;
+        try {
+            if (!writer.awaitTermination(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                System.err.println("Player statistics writer still busy; writing the last batch anyway");
+            }
+        } catch (InterruptedException e) {
+            interrupted = true; // restored after the write, which an interrupt would abort
+        }
+        try {
+            flush();
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/**
+ * The TablebaseAI class plays perfectly from a precomputed table where one covers the
+ * board (3x3, or 4x4 with three or four in a row), answering with a few lookups instead
+ * of a search. On any other board it hands the move to a fallback player.
+ */
+public class TablebaseAI implements AIPlayer {
+    private final AIPlayer fallback;
+
+    public TablebaseAI(AIPlayer fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public int selectMove(BitBoard board, Seed player, long deadline) {
+        if (PerfectPlayTable.supports(board)) {
+            PerfectPlayTable table = PerfectPlayTable.getInstance();
+            int move = table.bestMove(PerfectPlayTable.keyOf(board));
+            if (move != PerfectPlayTable.NO_MOVE) {
+                return move;
+            }
+        }
+        if (PerfectPlayTable4x4.supports(board)) {
+            int move = PerfectPlayTable4x4.forBoard(board).bestMove(board, player);
+            if (move != PerfectPlayTable4x4.NO_MOVE) {
+                return move;
+            }
+        }
+        return fallback.selectMove(board, player, deadline);
+    }
+}
@@ -0,0 +1,211 @@
+import java.util.Arrays;
+
+/**
+ * The ThreatIndex class keeps, for one board, how many seeds of each player lie in every
+ * winning window (every run of winLength cells), updated incrementally as seeds are
+ * placed and taken back. A search keeps one next to its BitBoard, so it can ask without
+ * scanning the board:
+ *
+ * - where a player wins at once (the empty cell of a window holding winLength - 1 of its
+ *   seeds and none of the opponent's), which is also where the opponent must block;
+ * - how many threats a move would create (open windows holding winLength - 2 of the
+ *   player's seeds through that cell), so forks can be ordered first;
+ * - the window evaluation of the position, kept as a running sum.
+ *
+ * A placement touches only the windows through that cell, at most 4 * winLength of
+ * them, and only scans a window's cells when it crosses one of the threat levels.
+ */
+public class ThreatIndex {
+    private static final int CROSS = Seed.CROSS.ordinal(), NOUGHT = Seed.NOUGHT.ordinal();
+
+    private final int winLength, size;
+    /** Cells of every window, and for each cell the windows through it */
+    private final int[][] windows;
+    private final int[][] cellWindows;
+    /** weights[n] = value of an open window holding n seeds of one player */
+    private final int[] weights;
+
+    /** Seeds of each player in each window, indexed [seed ordinal][window] */
+    private final int[][] counts;
+    /** The seed ordinal on each cell, or -1 for an empty cell */
+    private final int[] cells;
+    /** wins[seed][cell] = windows that seed completes by playing cell */
+    private final int[][] wins;
+    /** near[seed][cell] = open windows that playing cell leaves one seed short of complete */
+    private final int[][] near;
+    /** The cells where each seed wins at once, in winCells[seed][0 .. winCount[seed]) */
+    private final int[][] winCells, winPos;
+    private final int[] winCount = new int[2];
+    /** Evaluation of the position from CROSS's point of view */
+    private int score;
+
+    /** Constructor to index every window of a rows x cols board with K = winLength */
+    public ThreatIndex(int rows, int cols, int winLength) {
+        this.winLength = winLength;
+        this.size = rows * cols;
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        int[][] found = new int[4 * size][];
+        int[] windowsPerCell = new int[size];
+        int n = 0;
+        for (int[] d : directions) {
+            for (int row = 0; row < rows; ++row) {
+                for (int col = 0; col < cols; ++col) {
+                    int endRow = row + d[0] * (winLength - 1);
+                    int endCol = col + d[1] * (winLength - 1);
+                    if (endRow < 0 || endRow >= rows || endCol < 0 || endCol >= cols) {
+                        continue;
+                    }
+                    int[] window = new int[winLength];
+                    for (int i = 0; i < winLength; ++i) {
+                        window[i] = (row + d[0] * i) * cols + (col + d[1] * i);
+                        windowsPerCell[window[i]]++;
+                    }
+                    found[n++] = window;
+                }
+            }
+        }
+        windows = Arrays.copyOf(found, n);
+        cellWindows = new int[size][];
+        for (int index = 0; index < size; ++index) {
+            cellWindows[index] = new int[windowsPerCell[index]];
+            windowsPerCell[index] = 0;
+        }
+        for (int w = 0; w < n; ++w) {
+            for (int index : windows[w]) {
+                cellWindows[index][windowsPerCell[index]++] = w;
+            }
+        }
+        weights = new int[winLength + 1];
+        for (int i = 1; i <= winLength; ++i) {
+            weights[i] = 1 << Math.min(20, 3 * (i - 1));
+        }
+
+        counts = new int[2][n];
+        cells = new int[size];
+        wins = new int[2][size];
+        near = new int[2][size];
+        winCells = new int[2][size];
+        winPos = new int[2][size];
+        reset();
+    }
+
+    /** Clear the index, for an empty board */
+    public void reset() {
+        for (int seed = 0; seed < 2; ++seed) {
+            Arrays.fill(counts[seed], 0);
+            Arrays.fill(wins[seed], 0);
+            Arrays.fill(near[seed], 0);
+        }
+        Arrays.fill(cells, -1);
+        winCount[CROSS] = winCount[NOUGHT] = 0;
+        score = 0;
+    }
+
+    /** Rebuild the index for the seeds on board, which must have the same shape */
+    public void load(BitBoard board) {
+        reset();
+        for (int index = 0; index < size; ++index) {
+            Seed seed = board.get(index);
+            if (seed != Seed.NO_SEED) {
+                play(seed, index);
+            }
+        }
+    }
+
+    /** Record seed placed on the empty cell index */
+    public void play(Seed seed, int index) {
+        int s = seed.ordinal();
+        for (int w : cellWindows[index]) {
+            leave(w);
+            counts[s][w]++;
+        }
+        cells[index] = s;
+        for (int w : cellWindows[index]) {
+            enter(w);
+        }
+    }
+
+    /** Record seed taken back from cell index */
+    public void undo(Seed seed, int index) {
+        int s = seed.ordinal();
+        for (int w : cellWindows[index]) {
+            leave(w);
+            counts[s][w]--;
+        }
+        cells[index] = -1;
+        for (int w : cellWindows[index]) {
+            enter(w);
+        }
+    }
+
+    /** Return the number of cells where seed wins at once */
+    public int getWinCount(Seed seed) {
+        return winCount[seed.ordinal()];
+    }
+
+    /** Return the i-th cell where seed wins at once */
+    public int getWinCell(Seed seed, int i) {
+        return winCells[seed.ordinal()][i];
+    }
+
+    /** Return the number of open windows that seed brings to one seed short of a win by playing the empty cell index */
+    public int getThreatsCreated(Seed seed, int index) {
+        return near[seed.ordinal()][index];
+    }
+
+    /** Return the window evaluation of the position from the point of view of player */
+    public int getScore(Seed player) {
+        return (player == Seed.CROSS) ? score : -score;
+    }
+
+    /** Take window w's contribution out of the score and the threat tables */
+    private void leave(int w) {
+        update(w, -1);
+    }
+
+    /** Add window w's contribution to the score and the threat tables */
+    private void enter(int w) {
+        update(w, 1);
+    }
+
+    private void update(int w, int sign) {
+        int crosses = counts[CROSS][w], noughts = counts[NOUGHT][w];
+        if (noughts == 0) {
+            score += sign * weights[crosses];
+            mark(w, CROSS, crosses, sign);
+        } else if (crosses == 0) {
+            score -= sign * weights[noughts];
+            mark(w, NOUGHT, noughts, sign);
+        }
+    }
+
+    /** Add (sign 1) or remove (sign -1) the threats of an open window holding n seeds, all of seed s */
+    private void mark(int w, int s, int n, int sign) {
+        if (n == 0 || n < winLength - 2 || n == winLength) {
+            return;
+        }
+        int[] table = (n == winLength - 1) ? wins[s] : near[s];
+        for (int index : windows[w]) {
+            if (cells[index] < 0) {
+                int before = table[index];
+                table[index] += sign;
+                if (table == wins[s] && (before == 0) != (table[index] == 0)) {
+                    toggleWinCell(s, index, before == 0);
+                }
+            }
+        }
+    }
+
+    /** Add cell index to (or remove it from) the cells where seed s wins at once */
+    private void toggleWinCell(int s, int index, boolean add) {
+        int[] list = winCells[s], pos = winPos[s];
+        if (add) {
+            pos[index] = winCount[s];
+            list[winCount[s]++] = index;
+        } else {
+            int last = list[--winCount[s]];
+            list[pos[index]] = last;
+            pos[last] = pos[index];
+        }
+    }
+}
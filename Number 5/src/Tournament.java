@@ -0,0 +1,159 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Tournament class pits AI levels against each other in headless self-play: every
+ * level plays every level (itself included) as CROSS and as NOUGHT, with the games
+ * spread across all cores. No UI, timers or dialogs are involved; each worker thread
+ * owns its own AI players and board, so the only shared state is the result counters.
+ *
+ * It reports a win/draw/loss matrix, games per second, and move latency percentiles
+ * per level, to check bot strength and catch performance regressions.
+ *
+ * Usage: Tournament [size] [winLength] [gamesPerPairing] [moveTimeMs] [level ...]
+ */
+public class Tournament {
+    private final int size, winLength;
+    private final long gamesPerPairing;
+    private final long moveTimeNanos;
+    private final Difficulty[] levels;
+    private final int threads;
+
+    /** results[x][o][state ordinal]: games of level x (as CROSS) against level o */
+    private final LongAdder[][][] results;
+    private final LatencyHistogram[] latencies;
+    private long elapsedNanos;
+
+    public Tournament(int size, int winLength, long gamesPerPairing, long moveTimeMs, Difficulty[] levels, int threads) {
+        this.size = size;
+        this.winLength = winLength;
+        this.gamesPerPairing = gamesPerPairing;
+        this.moveTimeNanos = moveTimeMs * 1_000_000L;
+        this.levels = levels;
+        this.threads = threads;
+        results = new LongAdder[levels.length][levels.length][State.values().length];
+        for (LongAdder[][] row : results) {
+            for (LongAdder[] pairing : row) {
+                for (int s = 0; s < pairing.length; ++s) {
+                    pairing[s] = new LongAdder();
+                }
+            }
+        }
+        latencies = new LatencyHistogram[levels.length];
+        for (int i = 0; i < levels.length; ++i) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    /** Play every pairing to completion, each worker taking an equal share of the games */
+    public void run() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int worker = 0; worker < threads; ++worker) {
+                long games = gamesPerPairing / threads + (worker < gamesPerPairing % threads ? 1 : 0);
+                futures.add(executor.submit(() -> playShare(games)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Tournament worker failed", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+        elapsedNanos = System.nanoTime() - start;
+    }
+
+    /** One worker: games of every pairing, with AI players confined to this thread */
+    private void playShare(long games) {
+        AIPlayer[] players = new AIPlayer[levels.length];
+        for (int i = 0; i < levels.length; ++i) {
+            players[i] = levels[i].createPlayer(1);
+        }
+        BitBoard board = new BitBoard(size, size, winLength);
+        for (long game = 0; game < games; ++game) {
+            for (int x = 0; x < levels.length; ++x) {
+                for (int o = 0; o < levels.length; ++o) {
+                    State result = playGame(board, players[x], x, players[o], o);
+                    results[x][o][result.ordinal()].increment();
+                }
+            }
+        }
+    }
+
+    private State playGame(BitBoard board, AIPlayer cross, int crossLevel, AIPlayer nought, int noughtLevel) {
+        board.reset();
+        Seed player = Seed.CROSS;
+        State state = State.PLAYING;
+        while (state == State.PLAYING) {
+            boolean crossToMove = (player == Seed.CROSS);
+            long start = System.nanoTime();
+            int move = (crossToMove ? cross : nought).selectMove(board, player, start + moveTimeNanos);
+            latencies[crossToMove ? crossLevel : noughtLevel].record(System.nanoTime() - start);
+            state = board.play(player, move);
+            player = crossToMove ? Seed.NOUGHT : Seed.CROSS;
+        }
+        return state;
+    }
+
+    /** Print the result matrix, throughput and latency percentiles */
+    public void report() {
+        long totalGames = gamesPerPairing * levels.length * levels.length;
+        System.out.printf("Tournament %dx%d, %d in a row, %d games per pairing, %d threads%n",
+                size, size, winLength, gamesPerPairing, threads);
+        System.out.println("Rows play X, columns play O; W/D/L from X's point of view (%)");
+        System.out.printf("%-10s", "X \\ O");
+        for (Difficulty level : levels) {
+            System.out.printf("%-22s", level.getDisplayName());
+        }
+        System.out.println();
+        for (int x = 0; x < levels.length; ++x) {
+            System.out.printf("%-10s", levels[x].getDisplayName());
+            for (int o = 0; o < levels.length; ++o) {
+                LongAdder[] pairing = results[x][o];
+                double games = Math.max(1, gamesPerPairing);
+                System.out.printf("%-22s", String.format("%5.1f /%5.1f /%5.1f",
+                        100 * pairing[State.CROSS_WON.ordinal()].sum() / games,
+                        100 * pairing[State.DRAW.ordinal()].sum() / games,
+                        100 * pairing[State.NOUGHT_WON.ordinal()].sum() / games));
+            }
+            System.out.println();
+        }
+
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("%nGames: %d in %.2f s (%.0f games/s)%n", totalGames, seconds, totalGames / seconds);
+        System.out.println("Move latency (us):");
+        System.out.printf("%-10s%12s%10s%10s%10s%10s%10s%n", "Level", "moves", "mean", "p50", "p99", "p99.9", "max");
+        for (int i = 0; i < levels.length; ++i) {
+            LatencyHistogram h = latencies[i];
+            System.out.printf("%-10s%12d%10.1f%10.1f%10.1f%10.1f%10.1f%n", levels[i].getDisplayName(),
+                    h.getCount(), h.getMean() / 1e3, h.getPercentile(50) / 1e3, h.getPercentile(99) / 1e3,
+                    h.getPercentile(99.9) / 1e3, h.getMax() / 1e3);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int size = (args.length > 0) ? Integer.parseInt(args[0]) : Board.DEFAULT_SIZE;
+        int winLength = (args.length > 1) ? Integer.parseInt(args[1]) : Board.DEFAULT_WIN_LENGTH;
+        long games = (args.length > 2) ? Long.parseLong(args[2]) : 10_000;
+        long moveTimeMs = (args.length > 3) ? Long.parseLong(args[3]) : 50;
+        Difficulty[] levels = Difficulty.values();
+        if (args.length > 4) {
+            levels = new Difficulty[args.length - 4];
+            for (int i = 4; i < args.length; ++i) {
+                levels[i - 4] = Difficulty.valueOf(args[i].toUpperCase());
+            }
+        }
+        Tournament tournament = new Tournament(size, winLength, games, moveTimeMs, levels,
+                Runtime.getRuntime().availableProcessors());
+        tournament.run();
+        tournament.report();
+    }
+}
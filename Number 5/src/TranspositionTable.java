@@ -0,0 +1,67 @@
+import java.util.Arrays;
+
+/**
+ * The TranspositionTable class caches search results by Zobrist hash, so positions
+ * reached through different move orders (or, with canonical keys, through board
+ * symmetries) are only searched once.
+ *
+ * Each entry packs value, depth, bound type and best move into one long. The key is
+ * stored XOR-ed with that data, so a torn entry simply fails to match on probe.
+ */
+class TranspositionTable {
+    /** Bound types of a stored value */
+    static final int EXACT = 0, LOWER = 1, UPPER = 2;
+
+    private static final long VALID = 1L << 63;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+
+    /** Constructor for a table of 2^log2Size entries */
+    TranspositionTable(int log2Size) {
+        keys = new long[1 << log2Size];
+        data = new long[1 << log2Size];
+        mask = (1 << log2Size) - 1;
+    }
+
+    /** Return the packed entry stored for key, or 0 if there is none */
+    long probe(long key) {
+        int slot = (int) key & mask;
+        long entry = data[slot];
+        return ((keys[slot] ^ entry) == key) ? entry : 0L;
+    }
+
+    /** Store a result; move is -1 if there is no best move */
+    void store(long key, int value, int depth, int bound, int move) {
+        int slot = (int) key & mask;
+        long entry = VALID
+                | (value & 0xFFFFFFFFL)
+                | ((long) Math.min(depth, 0xFF) << 32)
+                | ((long) bound << 40)
+                | ((long) (move + 1) << 42);
+        data[slot] = entry;
+        keys[slot] = key ^ entry;
+    }
+
+    void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(data, 0L);
+    }
+
+    static int value(long entry) {
+        return (int) entry;
+    }
+
+    static int depth(long entry) {
+        return (int) (entry >>> 32) & 0xFF;
+    }
+
+    static int bound(long entry) {
+        return (int) (entry >>> 40) & 0x3;
+    }
+
+    static int move(long entry) {
+        return (int) ((entry >>> 42) & 0xFFFF) - 1;
+    }
+}
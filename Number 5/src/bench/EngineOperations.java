@@ -0,0 +1,14 @@
+package bench;
+
+import java.util.function.LongSupplier;
+
+/**
+ * The EngineOperations interface lets EngineBenchmark (which JMH requires to be in a
+ * package) set up the operations of the Benchmarks harness (which, like the rest of the
+ * game, is in the default package and so cannot be named from here). Benchmarks provides
+ * it through ServiceLoader, see META-INF/services/bench.EngineOperations.
+ */
+public interface EngineOperations {
+    /** Set up the named benchmark for one board; setup work is not measured */
+    LongSupplier operation(String name, int size, int winLength);
+}
@@ -0,0 +1,78 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests BatchEvaluator on every arrangement of seeds on a 3x3 board: exactly the
+ * positions that cannot arise in a game are INVALID, the others get the state the game
+ * reached, and a full-depth search picks a move of the best value, as in the solved table.
+ */
+class BatchEvaluatorTest {
+    private static final int ARRANGEMENTS = 19683; // 3^9
+
+    /** Record the state of every position reachable from board, by its table key */
+    private static void reach(BitBoard board, Seed player, Map<Integer, State> reached) {
+        if (reached.put(PerfectPlayTable.keyOf(board), board.getState()) != null || board.getState() != State.PLAYING) {
+            return;
+        }
+        for (int move = 0; move < board.getSize(); ++move) {
+            if (board.isEmpty(move)) {
+                board.play(player, move);
+                reach(board, (player == Seed.CROSS) ? Seed.NOUGHT : Seed.CROSS, reached);
+                board.undo();
+            }
+        }
+    }
+
+    @Test
+    void everyArrangementIsClassifiedLikeTheGame() {
+        Map<Integer, State> reached = new HashMap<>();
+        reach(new BitBoard(3, 3, 3), Seed.CROSS, reached);
+        assertEquals(5478, reached.size());
+
+        // Arrangement a has the seed of digit d of a (base 3, cell 0 first): 0 empty, 1 X, 2 O
+        byte[] cells = new byte[ARRANGEMENTS * 9];
+        for (int a = 0; a < ARRANGEMENTS; ++a) {
+            for (int cell = 0, rest = a; cell < 9; ++cell, rest /= 3) {
+                Seed seed = (rest % 3 == 1) ? Seed.CROSS : (rest % 3 == 2) ? Seed.NOUGHT : Seed.NO_SEED;
+                cells[a * 9 + cell] = (byte) seed.ordinal();
+            }
+        }
+        BatchEvaluator.Results results;
+        try (BatchEvaluator evaluator = new BatchEvaluator(3, 3, 3, 9, 2)) {
+            results = evaluator.evaluate(cells, ARRANGEMENTS);
+        }
+
+        PerfectPlayTable table = PerfectPlayTable.getInstance();
+        BitBoard board = new BitBoard(3, 3, 3);
+        for (int a = 0; a < ARRANGEMENTS; ++a) {
+            State state = reached.get(a);
+            if (state == null) {
+                assertEquals(BatchEvaluator.INVALID, results.states[a], "arrangement " + a);
+                continue;
+            }
+            assertEquals(state.ordinal(), results.states[a], "arrangement " + a);
+            if (state != State.PLAYING) {
+                assertEquals(-1, results.bestMoves[a]);
+                continue;
+            }
+            // The move found must keep the table's value for the side to move
+            board.reset();
+            for (int cell = 0; cell < 9; ++cell) {
+                if (cells[a * 9 + cell] != Seed.NO_SEED.ordinal()) {
+                    board.play(Seed.values()[cells[a * 9 + cell]], cell);
+                }
+            }
+            Seed player = (board.getOccupied() % 2 == 0) ? Seed.CROSS : Seed.NOUGHT;
+            int value = table.value(a);
+            State after = board.play(player, results.bestMoves[a]);
+            int moveValue = (after == State.PLAYING) ? PerfectPlayTable.LOSS + PerfectPlayTable.WIN
+                    - table.value(PerfectPlayTable.keyOf(board)) : (after == State.DRAW) ? PerfectPlayTable.DRAW : PerfectPlayTable.WIN;
+            assertEquals(value, moveValue, "arrangement " + a);
+            assertEquals(Integer.signum(value - PerfectPlayTable.DRAW), Integer.signum(results.values[a]), "arrangement " + a);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests BitBoard's win detection, on boards small enough for the line masks and on
+ * larger ones that count outward from the move, against a plain scan of the board;
+ * and that undo restores every position exactly.
+ */
+class BitBoardTest {
+    /** Board shapes as rows, cols, winLength: 7x7 uses the line masks, 9x9 and 15x15 count */
+    private static final int[][] SHAPES = {{3, 3, 3}, {4, 4, 3}, {7, 7, 4}, {9, 9, 5}, {15, 15, 5}};
+
+    /** Return the state of board found by scanning every line of every cell */
+    private static State scan(BitBoard board) {
+        int rows = board.getRows(), cols = board.getCols(), k = board.getWinLength();
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        for (int row = 0; row < rows; ++row) {
+            for (int col = 0; col < cols; ++col) {
+                Seed seed = board.get(row, col);
+                if (seed == Seed.NO_SEED) {
+                    continue;
+                }
+                for (int[] d : directions) {
+                    int n = 0;
+                    while (n < k && row + d[0] * n >= 0 && row + d[0] * n < rows && col + d[1] * n >= 0
+                            && col + d[1] * n < cols && board.get(row + d[0] * n, col + d[1] * n) == seed) {
+                        n++;
+                    }
+                    if (n == k) {
+                        return (seed == Seed.CROSS) ? State.CROSS_WON : State.NOUGHT_WON;
+                    }
+                }
+            }
+        }
+        return (board.getOccupied() == board.getSize()) ? State.DRAW : State.PLAYING;
+    }
+
+    /** Return the cells of board, and the sorted empty list, as one array to compare positions */
+    private static int[] snapshot(BitBoard board) {
+        int[] cells = new int[board.getSize() + board.getEmptyCount() + 3];
+        for (int i = 0; i < board.getSize(); ++i) {
+            cells[i] = board.get(i).ordinal();
+        }
+        int[] empty = new int[board.getEmptyCount()];
+        for (int i = 0; i < empty.length; ++i) {
+            empty[i] = board.getEmptyCell(i);
+        }
+        Arrays.sort(empty);
+        System.arraycopy(empty, 0, cells, board.getSize(), empty.length);
+        cells[cells.length - 3] = board.getState().ordinal();
+        cells[cells.length - 2] = board.getWinStart();
+        cells[cells.length - 1] = board.getWinEnd();
+        return cells;
+    }
+
+    @Test
+    void winsAreFoundInEveryDirection() {
+        for (int[] shape : SHAPES) {
+            int rows = shape[0], cols = shape[1], k = shape[2];
+            int[][] lines = {{0, 0, 0, 1}, {0, cols - 1, 1, 0}, {0, 0, 1, 1}, {0, cols - 1, 1, -1}};
+            for (int[] line : lines) {
+                BitBoard board = new BitBoard(rows, cols, k);
+                boolean[] onLine = new boolean[board.getSize()];
+                for (int i = 0; i < k; ++i) {
+                    onLine[(line[0] + line[2] * i) * cols + line[1] + line[3] * i] = true;
+                }
+                // X fills the line from its far end; O (with too few seeds to win) plays off it
+                for (int i = k - 1; i >= 0; --i) {
+                    State state = board.play(Seed.CROSS, line[0] + line[2] * i, line[1] + line[3] * i);
+                    if (i > 0) {
+                        assertEquals(State.PLAYING, state);
+                        int cell = 0;
+                        while (onLine[cell] || !board.isEmpty(cell)) {
+                            cell++;
+                        }
+                        board.play(Seed.NOUGHT, cell);
+                    } else {
+                        assertEquals(State.CROSS_WON, state);
+                    }
+                }
+                int start = line[0] * cols + line[1];
+                int end = (line[0] + line[2] * (k - 1)) * cols + line[1] + line[3] * (k - 1);
+                assertEquals(Math.min(start, end), Math.min(board.getWinStart(), board.getWinEnd()));
+                assertEquals(Math.max(start, end), Math.max(board.getWinStart(), board.getWinEnd()));
+            }
+        }
+    }
+
+    @Test
+    void randomGamesAgreeWithScanAndUndoRestoresEveryPosition() {
+        Random random = new Random(7);
+        for (int[] shape : SHAPES) {
+            BitBoard board = new BitBoard(shape[0], shape[1], shape[2]);
+            for (int game = 0; game < 200; ++game) {
+                board.reset();
+                int[][] before = new int[board.getSize() + 1][];
+                Seed player = Seed.CROSS;
+                while (board.getState() == State.PLAYING) {
+                    before[board.getOccupied()] = snapshot(board);
+                    int move = board.getEmptyCell(random.nextInt(board.getEmptyCount()));
+                    State state = board.play(player, move);
+                    assertEquals(scan(board), state);
+                    player = (player == Seed.CROSS) ? Seed.NOUGHT : Seed.CROSS;
+                }
+                while (board.getOccupied() > 0) {
+                    board.undo();
+                    assertArrayEquals(before[board.getOccupied()], snapshot(board));
+                }
+            }
+        }
+    }
+
+    @Test
+    void movesAfterTheGameEndsOrOnOccupiedCellsAreRejected() {
+        BitBoard board = new BitBoard(3, 3, 3);
+        board.play(Seed.CROSS, 0);
+        assertThrows(IllegalStateException.class, () -> board.play(Seed.NOUGHT, 0));
+        board.play(Seed.NOUGHT, 3);
+        board.play(Seed.CROSS, 1);
+        board.play(Seed.NOUGHT, 4);
+        assertEquals(State.CROSS_WON, board.play(Seed.CROSS, 2));
+        assertThrows(IllegalStateException.class, () -> board.play(Seed.NOUGHT, 5));
+        assertThrows(IllegalArgumentException.class, () -> board.unplay(0));
+        assertEquals(2, board.undo());
+        assertEquals(State.PLAYING, board.getState());
+        assertEquals(-1, board.getWinStart());
+    }
+}
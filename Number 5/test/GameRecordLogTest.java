@@ -0,0 +1,131 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests GameRecordWriter and GameRecordReader on logs damaged the way a crash leaves
+ * them: a partial block at the end, which the reader must stop at and the next writer
+ * must cut off before appending.
+ */
+class GameRecordLogTest {
+    @TempDir
+    Path dir;
+
+    /** Append a 3x3 match whose games are the given move lists, with their real results */
+    private static void writeMatch(GameRecordWriter writer, String playerX, int[]... games) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        BitBoard board = new BitBoard(3, 3, 3);
+        for (int[] moves : games) {
+            State result = new GameRecord(playerX, "O", 3, 3, 3, games.length, 1, moves, State.PLAYING).replay(board);
+            GameRecordWriter.encodeGame(buffer, moves, moves.length, result);
+        }
+        writer.writeMatch(3, 3, 3, games.length, playerX, "O", games.length, buffer);
+    }
+
+    private static List<GameRecord> readAll(GameRecordReader reader) {
+        List<GameRecord> games = new ArrayList<>();
+        while (reader.hasNext()) {
+            games.add(reader.next());
+        }
+        return games;
+    }
+
+    private static void truncate(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    @Test
+    void appendAfterTruncatedBlockKeepsLaterMatchesReadable() throws IOException {
+        Path file = dir.resolve("games.tttr");
+        long complete;
+        try (GameRecordWriter writer = new GameRecordWriter(file)) {
+            writeMatch(writer, "first", new int[] {0, 3, 1, 4, 2}, new int[] {4, 0, 8});
+            complete = Files.size(file);
+            writeMatch(writer, "lost", new int[] {0, 1, 2, 4, 3, 5, 7, 6, 8});
+        }
+        truncate(file, complete + (Files.size(file) - complete) / 2);
+
+        try (GameRecordReader reader = new GameRecordReader(file)) {
+            List<GameRecord> games = readAll(reader);
+            assertEquals(2, games.size());
+            assertTrue(reader.isTruncated());
+        }
+
+        try (GameRecordWriter writer = new GameRecordWriter(file)) {
+            assertEquals(complete, Files.size(file));
+            writeMatch(writer, "after", new int[] {6, 0, 7, 1, 8});
+        }
+
+        try (GameRecordReader reader = new GameRecordReader(file)) {
+            List<GameRecord> games = readAll(reader);
+            assertFalse(reader.isTruncated());
+            assertEquals(0, reader.getCorruptBlocks());
+            assertEquals(3, games.size());
+            assertEquals("first", games.get(0).getPlayerXName());
+            assertEquals(State.CROSS_WON, games.get(0).getResult());
+            assertEquals(2, games.get(1).getRound());
+            assertEquals("after", games.get(2).getPlayerXName());
+            assertArrayEquals(new int[] {6, 0, 7, 1, 8}, games.get(2).getMoves());
+            assertEquals(State.CROSS_WON, games.get(2).getResult());
+        }
+    }
+
+    @Test
+    void truncatedLengthPrefixAndHeaderAreCutOff() throws IOException {
+        Path file = dir.resolve("games.tttr");
+        try (GameRecordWriter writer = new GameRecordWriter(file)) {
+            writeMatch(writer, "first", new int[] {0, 3, 1, 4, 2});
+        }
+        long complete = Files.size(file);
+        Files.write(file, new byte[] {(byte) 0x80}, StandardOpenOption.APPEND); // half a length varint
+        try (GameRecordWriter writer = new GameRecordWriter(file)) {
+            assertEquals(complete, Files.size(file));
+        }
+
+        truncate(file, 3); // half a header
+        try (GameRecordWriter writer = new GameRecordWriter(file)) {
+            writeMatch(writer, "fresh", new int[] {4});
+        }
+        try (GameRecordReader reader = new GameRecordReader(file)) {
+            List<GameRecord> games = readAll(reader);
+            assertEquals(1, games.size());
+            assertEquals("fresh", games.get(0).getPlayerXName());
+        }
+    }
+
+    @Test
+    void invalidBlockIsSkippedBeforeAnyOfItsGamesIsReturned() throws IOException {
+        Path file = dir.resolve("games.tttr");
+        try (GameRecordWriter writer = new GameRecordWriter(file)) {
+            writeMatch(writer, "bad", new int[] {0, 3, 1, 4, 2}, new int[] {4, 0, 8});
+            writeMatch(writer, "good", new int[] {4});
+        }
+        // The result byte of the second game of the first block is its last byte
+        byte[] bytes = Files.readAllBytes(file);
+        int firstBlockLength = bytes[5];
+        bytes[5 + 1 + firstBlockLength - 1] = (byte) 0xFF;
+        Files.write(file, bytes);
+
+        try (GameRecordReader reader = new GameRecordReader(file)) {
+            List<GameRecord> games = readAll(reader);
+            assertEquals(1, reader.getCorruptBlocks());
+            assertEquals(1, games.size());
+            assertEquals("good", games.get(0).getPlayerXName());
+        }
+    }
+}
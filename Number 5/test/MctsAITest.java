@@ -0,0 +1,80 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests MctsAI: that it holds the perfect 3x3 player to a draw from either side, takes
+ * a win or blocks one without searching, and stays within its playout budget while
+ * reusing its tree over a whole game on several threads.
+ */
+class MctsAITest {
+    private static final long ONE_MINUTE = 60_000_000_000L;
+
+    /** Play a game between cross and nought on board and return the result */
+    private static State play(BitBoard board, AIPlayer cross, AIPlayer nought) {
+        board.reset();
+        Seed player = Seed.CROSS;
+        while (board.getState() == State.PLAYING) {
+            AIPlayer ai = (player == Seed.CROSS) ? cross : nought;
+            int move = ai.selectMove(board, player, System.nanoTime() + ONE_MINUTE);
+            assertTrue(board.isEmpty(move), "move " + move + " is taken");
+            board.play(player, move);
+            player = (player == Seed.CROSS) ? Seed.NOUGHT : Seed.CROSS;
+        }
+        return board.getState();
+    }
+
+    @Test
+    void drawsAgainstThePerfectPlayerOn3x3() {
+        BitBoard board = new BitBoard(3, 3, 3);
+        AIPlayer perfect = new TablebaseAI(new MinimaxAI(Integer.MAX_VALUE));
+        for (int game = 0; game < 3; ++game) {
+            assertEquals(State.DRAW, play(board, new MctsAI(1, 20_000, 1 << 16), perfect));
+            assertEquals(State.DRAW, play(board, perfect, new MctsAI(1, 20_000, 1 << 16)));
+        }
+    }
+
+    @Test
+    void takesAWinAndBlocksALossWithoutSearching() {
+        MctsAI ai = new MctsAI(1, 1_000, 1 << 12);
+        BitBoard board = new BitBoard(7, 7, 4);
+        // X has three in a row on row 3 with both ends open; O's seeds are far apart
+        int[] noughts = {0, 6, 42};
+        for (int i = 0; i < 3; ++i) {
+            board.play(Seed.CROSS, 3, 2 + i);
+            board.play(Seed.NOUGHT, noughts[i]);
+        }
+        int[] ends = {3 * 7 + 1, 3 * 7 + 5};
+        int win = ai.selectMove(board, Seed.CROSS, System.nanoTime() + ONE_MINUTE);
+        assertTrue(win == ends[0] || win == ends[1], "X should complete row 3, played " + win);
+        assertEquals(0, ai.getPlayouts());
+
+        int block = ai.selectMove(board, Seed.NOUGHT, System.nanoTime() + ONE_MINUTE);
+        assertTrue(block == ends[0] || block == ends[1], "O should block row 3, played " + block);
+        assertEquals(0, ai.getPlayouts());
+    }
+
+    @Test
+    void keepsToItsBudgetOverAWholeGame() {
+        long budget = 4_000;
+        MctsAI ai = new MctsAI(2, budget, 1 << 14);
+        BitBoard board = new BitBoard(9, 9, 5);
+        AIPlayer random = new RandomAI();
+        Seed player = Seed.CROSS;
+        while (board.getState() == State.PLAYING) {
+            int move;
+            if (player == Seed.CROSS) {
+                move = ai.selectMove(board, player, System.nanoTime() + ONE_MINUTE);
+                assertTrue(ai.getPlayouts() <= budget, ai.getPlayouts() + " playouts");
+            } else {
+                move = random.selectMove(board, player, System.nanoTime() + ONE_MINUTE);
+            }
+            assertTrue(board.isEmpty(move));
+            board.play(player, move);
+            player = (player == Seed.CROSS) ? Seed.NOUGHT : Seed.CROSS;
+        }
+        assertNotEquals(State.NOUGHT_WON, board.getState());
+    }
+}
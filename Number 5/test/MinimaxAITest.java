@@ -0,0 +1,113 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that a full-depth MinimaxAI plays a move of the best game-theoretic value in
+ * every 3x3 position, and with helper threads in 4x4 positions, checked against the
+ * solved tables; and that a search on a large board ends at its deadline.
+ */
+class MinimaxAITest {
+    private static final long ONE_MINUTE = 60_000_000_000L;
+
+    /** Return the value for player of playing move, given the table value of the positions after it */
+    private static int moveValue(BitBoard board, Seed player, int move, ToIntFunction<BitBoard> valueOf) {
+        State state = board.play(player, move);
+        int value = (state == State.PLAYING) ? PerfectPlayTable.LOSS + PerfectPlayTable.WIN - valueOf.applyAsInt(board)
+                : (state == State.DRAW) ? PerfectPlayTable.DRAW : PerfectPlayTable.WIN;
+        board.undo();
+        return value;
+    }
+
+    private static Seed toMove(BitBoard board) {
+        return (board.getOccupied() % 2 == 0) ? Seed.CROSS : Seed.NOUGHT;
+    }
+
+    @Test
+    void everyReachable3x3PositionGetsAnOptimalMove() {
+        PerfectPlayTable table = PerfectPlayTable.getInstance();
+        ToIntFunction<BitBoard> valueOf = b -> table.value(PerfectPlayTable.keyOf(b));
+        MinimaxAI ai = new MinimaxAI(Integer.MAX_VALUE);
+        int[] checked = {0};
+        visit(new BitBoard(3, 3, 3), new HashSet<>(), board -> {
+            Seed player = toMove(board);
+            int move = ai.selectMove(board, player, System.nanoTime() + ONE_MINUTE);
+            assertTrue(board.isEmpty(move));
+            assertEquals(valueOf.applyAsInt(board), moveValue(board, player, move, valueOf));
+            checked[0]++;
+        });
+        assertEquals(4520, checked[0]); // the non-terminal positions of the 5478 reachable ones
+    }
+
+    /** Call check on every position reachable from board with the game still on, once each */
+    private static void visit(BitBoard board, Set<Integer> seen, Consumer<BitBoard> check) {
+        if (board.getState() != State.PLAYING || !seen.add(PerfectPlayTable.keyOf(board))) {
+            return;
+        }
+        check.accept(board);
+        Seed player = toMove(board);
+        for (int move = 0; move < board.getSize(); ++move) {
+            if (board.isEmpty(move)) {
+                board.play(player, move);
+                visit(board, seen, check);
+                board.undo();
+            }
+        }
+    }
+
+    @Test
+    void parallelSearchFindsOptimal4x4Moves() {
+        for (int winLength = 3; winLength <= 4; ++winLength) {
+            PerfectPlayTable4x4 table = PerfectPlayTable4x4.forWinLength(winLength);
+            MinimaxAI ai = new MinimaxAI(Integer.MAX_VALUE, 2);
+            BitBoard board = new BitBoard(4, 4, winLength);
+            Random random = new Random(winLength);
+            int checked = 0;
+            while (checked < 30) {
+                board.reset();
+                int stones = 2 + random.nextInt(5);
+                while (board.getOccupied() < stones && board.getState() == State.PLAYING) {
+                    board.play(toMove(board), board.getEmptyCell(random.nextInt(board.getEmptyCount())));
+                }
+                Seed player = toMove(board);
+                if (board.getState() != State.PLAYING || !hasWorseMove(board, player, table)) {
+                    continue;
+                }
+                int move = ai.selectMove(board, player, System.nanoTime() + ONE_MINUTE);
+                assertEquals(table.value(board), moveValue(board, player, move, table::value));
+                checked++;
+            }
+        }
+    }
+
+    /** Return true if some move of player is worse than the best, so the position tells searches apart */
+    private static boolean hasWorseMove(BitBoard board, Seed player, PerfectPlayTable4x4 table) {
+        for (int move = 0; move < board.getSize(); ++move) {
+            if (board.isEmpty(move) && moveValue(board, player, move, table::value) != table.value(board)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    void searchStopsAtTheDeadline() {
+        BitBoard board = new BitBoard(15, 15, 5);
+        board.play(Seed.CROSS, 7, 7);
+        board.play(Seed.NOUGHT, 7, 8);
+        MinimaxAI ai = new MinimaxAI(Integer.MAX_VALUE, 2);
+        long start = System.nanoTime();
+        int move = ai.selectMove(board, Seed.CROSS, start + 200_000_000L);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(board.isEmpty(move));
+        assertTrue(millis < 2_000, "search took " + millis + " ms");
+        assertTrue(ai.getCompletedDepth() >= 1);
+    }
+}
@@ -0,0 +1,49 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests the 4x4 tables: the known values of the empty board, that the solver (on two
+ * threads) reproduces the shipped table byte for byte, and that it leaves a file of the
+ * wrong size alone instead of growing it.
+ */
+class PerfectPlayTable4x4Test {
+    @TempDir
+    Path dir;
+
+    @Test
+    void emptyBoardIsAWinForXWithThreeAndADrawWithFour() {
+        BitBoard three = new BitBoard(4, 4, 3);
+        assertEquals(PerfectPlayTable.WIN, PerfectPlayTable4x4.forBoard(three).value(three));
+        BitBoard four = new BitBoard(4, 4, 4);
+        assertEquals(PerfectPlayTable.DRAW, PerfectPlayTable4x4.forBoard(four).value(four));
+    }
+
+    @Test
+    void solverReproducesTheShippedTable() throws IOException {
+        Path file = dir.resolve("k3.tbl");
+        PerfectPlayTable4x4.main(new String[] {"3", file.toString(), "2"});
+        byte[] shipped;
+        try (InputStream in = PerfectPlayTable4x4.class.getClassLoader()
+                .getResourceAsStream(PerfectPlayTable4x4.resourceName(3))) {
+            shipped = in.readAllBytes();
+        }
+        assertArrayEquals(shipped, Files.readAllBytes(file));
+    }
+
+    @Test
+    void fileOfTheWrongSizeIsLeftAlone() throws IOException {
+        Path file = dir.resolve("short.tbl");
+        byte[] junk = new byte[1000];
+        Files.write(file, junk);
+        PerfectPlayTable4x4.main(new String[] {"4", file.toString()});
+        assertArrayEquals(junk, Files.readAllBytes(file));
+    }
+}
@@ -0,0 +1,159 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the spectator feed end to end: a viewer connected before the match rebuilds it
+ * from the snapshot and deltas through moves, undo, redo, a round end and a new round
+ * until it ends, and a viewer joining late gets a snapshot equal to the session.
+ */
+class SpectatorServerTest {
+    private static final long TIMEOUT_MILLIS = 5_000;
+
+    private SpectatorServer server;
+
+    /** A viewer reading frames off a non-blocking channel into a MatchView per match */
+    private static final class Viewer {
+        final Map<Integer, SpectatorServer.MatchView> matches = new HashMap<>();
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(SpectatorServer.CLIENT_BUFFER_BYTES);
+
+        Viewer(int port) throws IOException {
+            channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            channel.configureBlocking(false);
+        }
+
+        /** Apply the frames that arrive until done holds, failing after the timeout */
+        void readUntil(BooleanSupplier done) throws IOException, InterruptedException {
+            long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (!done.getAsBoolean()) {
+                if (System.currentTimeMillis() > deadline) {
+                    fail("the viewer did not catch up");
+                }
+                if (channel.read(in) == 0) {
+                    Thread.sleep(5);
+                    continue;
+                }
+                in.flip();
+                while (in.hasRemaining()) {
+                    in.mark();
+                    int length = SpectatorServer.readVarint(in);
+                    if (in.remaining() < length) {
+                        in.reset(); // the rest of the frame is still on its way
+                        break;
+                    }
+                    ByteBuffer frame = in.slice(in.position(), length);
+                    in.position(in.position() + length);
+                    frame.position(1);
+                    int id = SpectatorServer.readVarint(frame);
+                    frame.position(0);
+                    matches.computeIfAbsent(id, SpectatorServer.MatchView::new).apply(frame);
+                }
+                in.compact();
+            }
+        }
+    }
+
+    @BeforeEach
+    void start() throws IOException {
+        server = new SpectatorServer(0);
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        server.close();
+    }
+
+    private static void assertSameMatch(GameSession session, SpectatorServer.MatchView view) {
+        BitBoard board = session.getBoard();
+        assertEquals(board.getRows(), view.rows);
+        assertEquals(board.getCols(), view.cols);
+        assertEquals(board.getWinLength(), view.winLength);
+        assertEquals(session.getPlayerXName(), view.playerXName);
+        assertEquals(session.getPlayerOName(), view.playerOName);
+        assertEquals(session.getScoreX(), view.scoreX);
+        assertEquals(session.getScoreO(), view.scoreO);
+        assertEquals(session.getDrawScore(), view.draws);
+        assertEquals(session.isRoundOver(), view.roundOver);
+        assertEquals(session.getMoveCount(), view.moveCount);
+        for (int i = 0; i < view.moveCount; ++i) {
+            assertEquals(session.getMove(i), view.moves[i], "move " + i);
+        }
+    }
+
+    @Test
+    void liveViewerFollowsTheMatchToItsEnd() throws IOException, InterruptedException {
+        Viewer viewer = new Viewer(server.getPort());
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (server.getViewerCount() < 1) {
+            assertTrue(System.currentTimeMillis() < deadline, "the viewer was not accepted");
+            Thread.sleep(5);
+        }
+
+        GameSession session = new GameSession(7, 7, 4, 2, "Alice", "Bob");
+        server.watch(session);
+        // X takes row 0 while O plays on row 6, with an undo and redo on the way
+        for (int col = 0; col < 4; ++col) {
+            session.play(0, col);
+            if (col == 3) {
+                break;
+            }
+            session.play(6, col);
+            if (col == 1) {
+                session.undo();
+                session.redo();
+            }
+        }
+        assertTrue(session.isRoundOver());
+        viewer.readUntil(() -> viewer.matches.containsKey(1) && viewer.matches.get(1).roundOver
+                && viewer.matches.get(1).scoreX == 1);
+        SpectatorServer.MatchView view = viewer.matches.get(1);
+        assertEquals(State.CROSS_WON, view.lastResult);
+        assertSameMatch(session, view);
+
+        session.newRound();
+        session.play(3, 3);
+        session.play(3, 4);
+        session.play(2, 2);
+        session.undo();
+        viewer.readUntil(() -> !view.roundOver && view.moveCount == 2);
+        assertSameMatch(session, view);
+
+        server.unwatch(session);
+        viewer.readUntil(() -> view.ended);
+        assertSameMatch(session, view);
+        viewer.channel.close();
+    }
+
+    @Test
+    void lateViewerGetsASnapshotOfTheMatch() throws IOException, InterruptedException {
+        GameSession session = new GameSession(9, 9, 5, 3, "Alice", "Bob");
+        server.watch(session);
+        int[] cells = {40, 41, 30, 50, 20, 60};
+        for (int cell : cells) {
+            session.play(cell / 9, cell % 9);
+        }
+        session.undo();
+
+        Viewer viewer = new Viewer(server.getPort());
+        viewer.readUntil(() -> viewer.matches.containsKey(1));
+        SpectatorServer.MatchView view = viewer.matches.get(1);
+        assertFalse(view.ended);
+        assertSameMatch(session, view);
+        viewer.channel.close();
+    }
+}
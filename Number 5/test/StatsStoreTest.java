@@ -0,0 +1,32 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests that StatsStore.close() saves every recorded game, including a batch the
+ * background writer is busy with when the store is closed.
+ */
+class StatsStoreTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void closeSavesEveryGame() throws IOException {
+        Path file = dir.resolve("stats.tsv");
+        for (int run = 1; run <= 20; ++run) {
+            StatsStore store = new StatsStore(file);
+            for (int game = 0; game < StatsStore.BATCH_SIZE + 1; ++game) {
+                store.recordGame("Ann", "Bob", (game % 3 == 0) ? State.DRAW : State.CROSS_WON, 5);
+            }
+            store.close();
+
+            StatsStore.PlayerStats ann = new StatsStore(file).getStats("Ann");
+            assertEquals(run * (StatsStore.BATCH_SIZE + 1), ann.getGames());
+            assertEquals(run * 22, ann.getDraws());
+        }
+    }
+}
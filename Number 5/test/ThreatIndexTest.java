@@ -0,0 +1,94 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that ThreatIndex, kept up to date move by move through random play and undo,
+ * reports the same winning cells and threat counts as a scan of every window, and the
+ * same score as an index loaded from scratch.
+ */
+class ThreatIndexTest {
+    private static final int[][] SHAPES = {{3, 3, 3}, {4, 4, 4}, {7, 7, 4}, {9, 9, 5}};
+
+    /** Count the windows through cell index holding n seeds of seed, none of the opponent's and no other empty cell but index */
+    private static int windows(BitBoard board, Seed seed, int index, int n) {
+        int rows = board.getRows(), cols = board.getCols(), k = board.getWinLength();
+        int row = index / cols, col = index % cols, found = 0;
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        for (int[] d : directions) {
+            for (int offset = 0; offset < k; ++offset) {
+                int startRow = row - d[0] * offset, startCol = col - d[1] * offset;
+                int endRow = startRow + d[0] * (k - 1), endCol = startCol + d[1] * (k - 1);
+                if (startRow < 0 || startRow >= rows || startCol < 0 || startCol >= cols
+                        || endRow < 0 || endRow >= rows || endCol < 0 || endCol >= cols) {
+                    continue;
+                }
+                int own = 0, other = 0;
+                for (int i = 0; i < k; ++i) {
+                    Seed s = board.get(startRow + d[0] * i, startCol + d[1] * i);
+                    if (s == seed) {
+                        own++;
+                    } else if (s != Seed.NO_SEED) {
+                        other++;
+                    }
+                }
+                if (own == n && other == 0) {
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    private static void check(BitBoard board, ThreatIndex index, ThreatIndex fresh) {
+        int k = board.getWinLength();
+        for (Seed seed : new Seed[] {Seed.CROSS, Seed.NOUGHT}) {
+            boolean[] winCell = new boolean[board.getSize()];
+            for (int i = 0; i < index.getWinCount(seed); ++i) {
+                winCell[index.getWinCell(seed, i)] = true;
+            }
+            for (int cell = 0; cell < board.getSize(); ++cell) {
+                if (!board.isEmpty(cell)) {
+                    continue;
+                }
+                assertEquals(windows(board, seed, cell, k - 1) > 0, winCell[cell], "win at " + cell);
+                if (k > 2) {
+                    assertEquals(windows(board, seed, cell, k - 2), index.getThreatsCreated(seed, cell), "threats at " + cell);
+                }
+            }
+        }
+        fresh.load(board);
+        assertEquals(fresh.getScore(Seed.CROSS), index.getScore(Seed.CROSS));
+        assertEquals(-index.getScore(Seed.CROSS), index.getScore(Seed.NOUGHT));
+    }
+
+    @Test
+    void incrementalIndexMatchesAScanThroughPlayAndUndo() {
+        Random random = new Random(25);
+        for (int[] shape : SHAPES) {
+            BitBoard board = new BitBoard(shape[0], shape[1], shape[2]);
+            ThreatIndex index = new ThreatIndex(shape[0], shape[1], shape[2]);
+            ThreatIndex fresh = new ThreatIndex(shape[0], shape[1], shape[2]);
+            for (int game = 0; game < 30; ++game) {
+                board.reset();
+                index.reset();
+                Seed player = Seed.CROSS;
+                while (board.getState() == State.PLAYING) {
+                    if (board.getOccupied() > 0 && random.nextInt(4) == 0) {
+                        int move = board.undo();
+                        player = (player == Seed.CROSS) ? Seed.NOUGHT : Seed.CROSS;
+                        index.undo(player, move);
+                    } else {
+                        int move = board.getEmptyCell(random.nextInt(board.getEmptyCount()));
+                        board.play(player, move);
+                        index.play(player, move);
+                        player = (player == Seed.CROSS) ? Seed.NOUGHT : Seed.CROSS;
+                    }
+                    check(board, index, fresh);
+                }
+            }
+        }
+    }
+}